@@ -0,0 +1,58 @@
+package org.dru.dusap.ecs;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EcsAspectMatchingBenchmark {
+    @Param({"1000", "100000"})
+    public int entityCount;
+
+    @Param({"64", "128", "256"})
+    public int maxComponentCount;
+
+    private EcsBitSet[] bitSets;
+    private EcsAspect[] aspects;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final EcsEngine engine = new EcsEngine(maxComponentCount);
+        final Random random = new Random(42L);
+        bitSets = new EcsBitSet[entityCount];
+        for (int index = 0; index < entityCount; index++) {
+            final EcsBitSet bitSet = EcsBitSet.create(maxComponentCount);
+            for (int bit = 0; bit < 8; bit++) {
+                bitSet.set(random.nextInt(maxComponentCount));
+            }
+            bitSets[index] = bitSet;
+        }
+        aspects = new EcsAspect[16];
+        for (int index = 0; index < aspects.length; index++) {
+            final EcsBitSet allOf = EcsBitSet.create(maxComponentCount);
+            allOf.set(random.nextInt(maxComponentCount));
+            final EcsBitSet noneOf = EcsBitSet.create(maxComponentCount);
+            noneOf.set(random.nextInt(maxComponentCount));
+            aspects[index] = new EcsAspect(allOf, null, noneOf, EcsMatcher.compile(allOf, null, noneOf));
+        }
+    }
+
+    @Benchmark
+    public int test() {
+        int matches = 0;
+        for (final EcsAspect aspect : aspects) {
+            for (final EcsBitSet bitSet : bitSets) {
+                if (aspect.test(bitSet)) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,95 @@
+package org.dru.dusap.ecs;
+
+import java.util.function.Consumer;
+
+final class EcsBenchmarkComponents {
+    static final class Position {
+        float x;
+        float y;
+    }
+
+    static final class Velocity {
+        float dx;
+        float dy;
+    }
+
+    static final class Health {
+        int value;
+    }
+
+    static final class Lifetime {
+        int ticks;
+    }
+
+    static final class Renderable {
+        int sprite;
+    }
+
+    static final Class<?>[] TYPES = {
+            Position.class, Velocity.class, Health.class, Lifetime.class, Renderable.class
+    };
+
+    static Object newComponent(final int type) {
+        switch (type) {
+            case 0:
+                return new Position();
+            case 1:
+                return new Velocity();
+            case 2:
+                return new Health();
+            case 3:
+                return new Lifetime();
+            case 4:
+                return new Renderable();
+            default:
+                throw new IllegalArgumentException("unknown component type: " + type);
+        }
+    }
+
+    static Consumer<EcsEntity> builder(final int componentCount) {
+        return entity -> {
+            for (int type = 0; type < componentCount; type++) {
+                entity.setComponent(newComponent(type));
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    static EcsPrefab prefab(final EcsEngine engine, final int componentCount) {
+        final EcsPrefab prefab = engine.createPrefab();
+        for (int type = 0; type < componentCount; type++) {
+            final int componentType = type;
+            prefab.with((Class<Object>) TYPES[type], () -> newComponent(componentType));
+        }
+        return prefab;
+    }
+
+    static EcsFamily family(final EcsEngine engine, final int allOfMask, final int noneOfMask) {
+        final EcsBuilder builder = new EcsBuilder(engine);
+        for (int type = 0; type < TYPES.length; type++) {
+            if ((allOfMask & (1 << type)) != 0) {
+                builder.allOf(TYPES[type]);
+            }
+            if ((noneOfMask & (1 << type)) != 0) {
+                builder.noneOf(TYPES[type]);
+            }
+        }
+        return engine.acquireFamily(builder.getAspect());
+    }
+
+    static void registerFamilies(final EcsEngine engine, final int familyCount) {
+        int registered = 0;
+        for (int allOfMask = 1; allOfMask < 1 << TYPES.length && registered < familyCount; allOfMask++) {
+            family(engine, allOfMask, 0);
+            registered++;
+            final int noneOfMask = ~allOfMask & ((1 << TYPES.length) - 1);
+            if (noneOfMask != 0 && registered < familyCount) {
+                family(engine, allOfMask, noneOfMask & -noneOfMask);
+                registered++;
+            }
+        }
+    }
+
+    private EcsBenchmarkComponents() {
+    }
+}
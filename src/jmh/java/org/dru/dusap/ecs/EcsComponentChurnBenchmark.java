@@ -0,0 +1,52 @@
+package org.dru.dusap.ecs;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EcsComponentChurnBenchmark {
+    @Param({"1000", "100000"})
+    public int entityCount;
+
+    @Param({"64", "128"})
+    public int maxComponentCount;
+
+    @Param({"SPARSE", "ARCHETYPE"})
+    public EcsStorage storage;
+
+    @Param({"1", "10", "50"})
+    public int familyCount;
+
+    private EcsEngine engine;
+    private EcsEntity[] entities;
+    private EcsMapping<EcsBenchmarkComponents.Health> health;
+    private EcsBenchmarkComponents.Health component;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new EcsEngine(maxComponentCount, storage);
+        EcsBenchmarkComponents.registerFamilies(engine, familyCount);
+        health = engine.getMapping(EcsBenchmarkComponents.Health.class);
+        component = new EcsBenchmarkComponents.Health();
+        entities = new EcsEntity[entityCount];
+        for (int index = 0; index < entityCount; index++) {
+            entities[index] = engine.getEntity(engine.createEntity(EcsBenchmarkComponents.builder(2)));
+        }
+    }
+
+    @Benchmark
+    public void setAndClearComponent() {
+        for (final EcsEntity entity : entities) {
+            entity.setComponent(health, component);
+        }
+        for (final EcsEntity entity : entities) {
+            entity.clearComponent(health);
+        }
+    }
+}
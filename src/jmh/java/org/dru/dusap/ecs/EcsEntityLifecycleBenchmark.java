@@ -0,0 +1,58 @@
+package org.dru.dusap.ecs;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EcsEntityLifecycleBenchmark {
+    @Param({"1000", "100000"})
+    public int entityCount;
+
+    @Param({"64", "128"})
+    public int maxComponentCount;
+
+    @Param({"SPARSE", "ARCHETYPE"})
+    public EcsStorage storage;
+
+    @Param({"3"})
+    public int componentCount;
+
+    private EcsEngine engine;
+    private long[] handles;
+    private Consumer<EcsEntity> builder;
+    private EcsPrefab prefab;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new EcsEngine(maxComponentCount, storage);
+        EcsBenchmarkComponents.registerFamilies(engine, 10);
+        handles = new long[entityCount];
+        builder = EcsBenchmarkComponents.builder(componentCount);
+        prefab = EcsBenchmarkComponents.prefab(engine, componentCount);
+    }
+
+    @Benchmark
+    public void createAndDestroy() {
+        for (int index = 0; index < entityCount; index++) {
+            handles[index] = engine.createEntity(builder);
+        }
+        for (int index = 0; index < entityCount; index++) {
+            engine.destroyEntity(handles[index]);
+        }
+    }
+
+    @Benchmark
+    public void createFromPrefabAndDestroy() {
+        final long[] created = engine.createEntities(prefab, entityCount);
+        for (final long handle : created) {
+            engine.destroyEntity(handle);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.dru.dusap.ecs;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EcsIterationBenchmark {
+    @Param({"1000", "100000"})
+    public int entityCount;
+
+    @Param({"64", "128"})
+    public int maxComponentCount;
+
+    @Param({"SPARSE", "ARCHETYPE"})
+    public EcsStorage storage;
+
+    @Param({"1", "2", "3", "4", "5"})
+    public int componentCount;
+
+    private EcsFamily family;
+    private EcsMapping<?>[] mappings;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final EcsEngine engine = new EcsEngine(maxComponentCount, storage);
+        family = EcsBenchmarkComponents.family(engine, (1 << componentCount) - 1, 0);
+        mappings = new EcsMapping<?>[componentCount];
+        for (int type = 0; type < componentCount; type++) {
+            mappings[type] = engine.getMapping(EcsBenchmarkComponents.TYPES[type]);
+        }
+        for (int index = 0; index < entityCount; index++) {
+            engine.createEntity(EcsBenchmarkComponents.builder(EcsBenchmarkComponents.TYPES.length));
+        }
+    }
+
+    @Benchmark
+    public void forEach(final Blackhole blackhole) {
+        family.forEach(entity -> {
+            for (final EcsMapping<?> mapping : mappings) {
+                blackhole.consume(entity.getComponent(mapping));
+            }
+        });
+    }
+}
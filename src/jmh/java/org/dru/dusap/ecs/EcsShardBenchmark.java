@@ -0,0 +1,103 @@
+package org.dru.dusap.ecs;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EcsShardBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int shardCount;
+
+    @Param({"100000"})
+    public int entityCount;
+
+    @Param({"0", "256"})
+    public int migrationsPerShard;
+
+    @Param({"SPARSE", "ARCHETYPE"})
+    public EcsStorage storage;
+
+    private ForkJoinPool executor;
+    private EcsWorld world;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = new ForkJoinPool(shardCount);
+        world = new EcsWorld(shardCount, shard -> {
+            final EcsEngine engine = new EcsEngine(64, storage);
+            engine.addSystem(new MovementSystem());
+            engine.addSystem(new MigrationSystem((shard + 1) % shardCount));
+            return engine;
+        }, executor);
+        for (int index = 0; index < entityCount; index++) {
+            world.createEntity(index, entity -> {
+                entity.setComponent(new EcsBenchmarkComponents.Position());
+                final EcsBenchmarkComponents.Velocity velocity = new EcsBenchmarkComponents.Velocity();
+                velocity.dx = 1f;
+                velocity.dy = 1f;
+                entity.setComponent(velocity);
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public void update() {
+        world.update();
+    }
+
+    private static final class MovementSystem extends EcsSystem {
+        @Override
+        protected void configure(final EcsBuilder builder) {
+            builder.allOf(EcsBenchmarkComponents.Position.class, EcsBenchmarkComponents.Velocity.class);
+        }
+
+        @Override
+        protected void update() {
+            forEach(entity -> {
+                final EcsBenchmarkComponents.Position position
+                        = entity.getComponent(EcsBenchmarkComponents.Position.class);
+                final EcsBenchmarkComponents.Velocity velocity
+                        = entity.getComponent(EcsBenchmarkComponents.Velocity.class);
+                position.x += velocity.dx;
+                position.y += velocity.dy;
+            });
+        }
+    }
+
+    private final class MigrationSystem extends EcsSystem {
+        private final int target;
+        private int moved;
+
+        private MigrationSystem(final int target) {
+            this.target = target;
+        }
+
+        @Override
+        protected void configure(final EcsBuilder builder) {
+            builder.allOf(EcsBenchmarkComponents.Position.class);
+        }
+
+        @Override
+        protected void update() {
+            moved = 0;
+            forEach(entity -> {
+                if (moved < migrationsPerShard) {
+                    world.migrate(entity, target);
+                    moved++;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.dru.dusap.ecs;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EcsUpdateBenchmark {
+    @Param({"1000", "100000"})
+    public int entityCount;
+
+    @Param({"64", "128"})
+    public int maxComponentCount;
+
+    @Param({"SPARSE", "ARCHETYPE"})
+    public EcsStorage storage;
+
+    private EcsEngine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new EcsEngine(maxComponentCount, storage);
+        engine.addSystem(new MovementSystem());
+        engine.addSystem(new DamageSystem());
+        engine.addSystem(new LifetimeSystem());
+        engine.addSystem(new RenderSystem());
+        for (int index = 0; index < entityCount; index++) {
+            final int ticks = index % 100;
+            engine.createEntity(entity -> {
+                entity.setComponent(new EcsBenchmarkComponents.Position());
+                entity.setComponent(new EcsBenchmarkComponents.Velocity());
+                entity.setComponent(new EcsBenchmarkComponents.Health());
+                final EcsBenchmarkComponents.Lifetime lifetime = new EcsBenchmarkComponents.Lifetime();
+                lifetime.ticks = ticks;
+                entity.setComponent(lifetime);
+                if (ticks % 2 == 0) {
+                    entity.setComponent(new EcsBenchmarkComponents.Renderable());
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public void update() {
+        engine.update();
+    }
+
+    private static final class MovementSystem extends EcsSystem {
+        @Override
+        protected void configure(final EcsBuilder builder) {
+            builder.allOf(EcsBenchmarkComponents.Position.class, EcsBenchmarkComponents.Velocity.class);
+        }
+
+        @Override
+        protected void update() {
+            forEach(entity -> {
+                final EcsBenchmarkComponents.Position position
+                        = entity.getComponent(EcsBenchmarkComponents.Position.class);
+                final EcsBenchmarkComponents.Velocity velocity
+                        = entity.getComponent(EcsBenchmarkComponents.Velocity.class);
+                position.x += velocity.dx;
+                position.y += velocity.dy;
+            });
+        }
+    }
+
+    private static final class DamageSystem extends EcsSystem {
+        @Override
+        protected void configure(final EcsBuilder builder) {
+            builder.allOf(EcsBenchmarkComponents.Health.class);
+        }
+
+        @Override
+        protected void update() {
+            forEach(entity -> entity.getComponent(EcsBenchmarkComponents.Health.class).value++);
+        }
+    }
+
+    private static final class LifetimeSystem extends EcsSystem {
+        @Override
+        protected void configure(final EcsBuilder builder) {
+            builder.allOf(EcsBenchmarkComponents.Lifetime.class);
+        }
+
+        @Override
+        protected void update() {
+            forEach(entity -> {
+                final EcsBenchmarkComponents.Lifetime lifetime
+                        = entity.getComponent(EcsBenchmarkComponents.Lifetime.class);
+                if (--lifetime.ticks < 0) {
+                    entity.destroyEntity();
+                    createEntity(spawned -> {
+                        spawned.setComponent(new EcsBenchmarkComponents.Position());
+                        spawned.setComponent(new EcsBenchmarkComponents.Velocity());
+                        spawned.setComponent(new EcsBenchmarkComponents.Health());
+                        final EcsBenchmarkComponents.Lifetime spawnedLifetime
+                                = new EcsBenchmarkComponents.Lifetime();
+                        spawnedLifetime.ticks = 100;
+                        spawned.setComponent(spawnedLifetime);
+                    });
+                }
+            });
+        }
+    }
+
+    private static final class RenderSystem extends EcsSystem {
+        private int visible;
+
+        @Override
+        protected void configure(final EcsBuilder builder) {
+            builder.allOf(EcsBenchmarkComponents.Position.class, EcsBenchmarkComponents.Renderable.class);
+        }
+
+        @Override
+        protected void update() {
+            visible = 0;
+            forEach(entity -> visible++);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.dru.dusap.ecs;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EcsViewBenchmark {
+    @Param({"1000", "100000"})
+    public int entityCount;
+
+    @Param({"SPARSE", "ARCHETYPE"})
+    public EcsStorage storage;
+
+    private EcsFamily family;
+    private EcsMapping<EcsBenchmarkComponents.Position> position;
+    private EcsMapping<EcsBenchmarkComponents.Velocity> velocity;
+    private EcsView2<EcsBenchmarkComponents.Position, EcsBenchmarkComponents.Velocity> view;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final EcsEngine engine = new EcsEngine(64, storage);
+        family = EcsBenchmarkComponents.family(engine, 0b11, 0);
+        position = engine.getMapping(EcsBenchmarkComponents.Position.class);
+        velocity = engine.getMapping(EcsBenchmarkComponents.Velocity.class);
+        view = new EcsView2<>(family, position.getId(), velocity.getId());
+        for (int index = 0; index < entityCount; index++) {
+            engine.createEntity(EcsBenchmarkComponents.builder(EcsBenchmarkComponents.TYPES.length));
+        }
+    }
+
+    @Benchmark
+    public void forEach() {
+        family.forEach(entity -> {
+            final EcsBenchmarkComponents.Position p = entity.getComponent(position);
+            final EcsBenchmarkComponents.Velocity v = entity.getComponent(velocity);
+            p.x += v.dx;
+            p.y += v.dy;
+        });
+    }
+
+    @Benchmark
+    public void view() {
+        view.forEach((entity, p, v) -> {
+            p.x += v.dx;
+            p.y += v.dy;
+        });
+    }
+}
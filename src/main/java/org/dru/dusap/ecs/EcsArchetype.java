@@ -0,0 +1,204 @@
+package org.dru.dusap.ecs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+final class EcsArchetype {
+    static final int CHUNK_SHIFT = 8;
+    static final int CHUNK_CAPACITY = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_CAPACITY - 1;
+
+    private final EcsEngine engine;
+    private final int id;
+    private final EcsBitSet bitSet;
+    private final int[] componentIds;
+    private final int[] columns;
+    private final EcsValueMapping[] valueMappings;
+    private final EcsArchetype[] addEdges;
+    private final EcsArchetype[] removeEdges;
+    private final List<EcsFamily> families;
+    private EcsChunk[] chunks;
+    private int chunkCount;
+    private int entityCount;
+
+    EcsArchetype(final EcsEngine engine, final int id, final EcsBitSet bitSet) {
+        this.engine = engine;
+        this.id = id;
+        this.bitSet = bitSet;
+        final int maxComponentCount = engine.getMaxComponentCount();
+        columns = new int[maxComponentCount];
+        Arrays.fill(columns, -1);
+        int columnCount = 0;
+        final int[] ids = new int[maxComponentCount];
+        for (int componentId = 0; componentId < maxComponentCount; componentId++) {
+            if (bitSet.get(componentId)) {
+                columns[componentId] = columnCount;
+                ids[columnCount++] = componentId;
+            }
+        }
+        componentIds = Arrays.copyOf(ids, columnCount);
+        final EcsMapping<?>[] mappings = engine.getMappings();
+        valueMappings = new EcsValueMapping[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            final EcsMapping<?> mapping = mappings[componentIds[column]];
+            valueMappings[column] = (mapping != null ? mapping.getValueMapping() : null);
+        }
+        addEdges = new EcsArchetype[maxComponentCount];
+        removeEdges = new EcsArchetype[maxComponentCount];
+        families = new ArrayList<>();
+        chunks = new EcsChunk[0];
+        chunkCount = 0;
+        entityCount = 0;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    EcsBitSet getBitSet() {
+        return bitSet;
+    }
+
+    int[] getComponentIds() {
+        return componentIds;
+    }
+
+    int getColumn(final int componentId) {
+        return columns[componentId];
+    }
+
+    EcsValueMapping getValueMapping(final int componentId) {
+        final int column = columns[componentId];
+        return (column != -1 ? valueMappings[column] : null);
+    }
+
+    List<EcsFamily> getFamilies() {
+        return families;
+    }
+
+    void addFamily(final EcsFamily family) {
+        families.add(family);
+    }
+
+    void removeFamily(final EcsFamily family) {
+        families.remove(family);
+    }
+
+    int getEntityCount() {
+        return entityCount;
+    }
+
+    int getChunkCount() {
+        return chunkCount;
+    }
+
+    EcsChunk getChunk(final int index) {
+        return chunks[index];
+    }
+
+    int getChunkSize(final int index) {
+        return (index < chunkCount - 1 ? CHUNK_CAPACITY : entityCount - (index << CHUNK_SHIFT));
+    }
+
+    EcsArchetype withComponent(final int componentId) {
+        EcsArchetype target = addEdges[componentId];
+        if (target == null) {
+            final EcsBitSet targetBitSet = bitSet.copy();
+            targetBitSet.set(componentId);
+            target = engine.getArchetype(targetBitSet);
+            addEdges[componentId] = target;
+        }
+        return target;
+    }
+
+    EcsArchetype withoutComponent(final int componentId) {
+        EcsArchetype target = removeEdges[componentId];
+        if (target == null) {
+            final EcsBitSet targetBitSet = bitSet.copy();
+            targetBitSet.clearIfSet(componentId);
+            target = engine.getArchetype(targetBitSet);
+            removeEdges[componentId] = target;
+        }
+        return target;
+    }
+
+    Object get(final int row, final int componentId) {
+        return chunks[row >> CHUNK_SHIFT].get(componentId, row & CHUNK_MASK);
+    }
+
+    void set(final int row, final int componentId, final Object component) {
+        chunks[row >> CHUNK_SHIFT].set(componentId, row & CHUNK_MASK, component);
+    }
+
+    void copyTo(final int row, final EcsArchetype target, final int targetRow) {
+        final EcsChunk chunk = chunks[row >> CHUNK_SHIFT];
+        final int index = row & CHUNK_MASK;
+        final EcsChunk targetChunk = target.chunks[targetRow >> CHUNK_SHIFT];
+        final int targetIndex = targetRow & CHUNK_MASK;
+        for (int column = 0; column < componentIds.length; column++) {
+            final int targetColumn = target.columns[componentIds[column]];
+            if (targetColumn == -1) {
+                continue;
+            }
+            final EcsValueMapping valueMapping = valueMappings[column];
+            if (valueMapping != null) {
+                valueMapping.copy(chunk.getData(column), index, targetChunk.getData(targetColumn), targetIndex);
+            } else {
+                targetChunk.getColumn(targetColumn)[targetIndex] = chunk.getColumn(column)[index];
+            }
+        }
+    }
+
+    int addEntity(final EcsEntity entity) {
+        final int row = entityCount++;
+        final int chunkIndex = row >> CHUNK_SHIFT;
+        if (chunkIndex >= chunkCount) {
+            if (chunkCount >= chunks.length) {
+                chunks = Arrays.copyOf(chunks, (chunkCount + 1) * 3 / 2);
+            }
+            if (chunks[chunkCount] == null) {
+                chunks[chunkCount] = new EcsChunk(CHUNK_CAPACITY, columns, valueMappings);
+            }
+            chunkCount++;
+        }
+        final EcsChunk chunk = chunks[chunkIndex];
+        final int index = row & CHUNK_MASK;
+        chunk.getEntities()[index] = entity;
+        for (int column = valueMappings.length; --column >= 0; ) {
+            if (valueMappings[column] != null) {
+                valueMappings[column].reset(chunk.getData(column), index);
+            }
+        }
+        return row;
+    }
+
+    void removeEntity(final int row) {
+        final int last = --entityCount;
+        final EcsChunk chunk = chunks[row >> CHUNK_SHIFT];
+        final int index = row & CHUNK_MASK;
+        final EcsChunk lastChunk = chunks[last >> CHUNK_SHIFT];
+        final int lastIndex = last & CHUNK_MASK;
+        final EcsEntity moved = lastChunk.getEntities()[lastIndex];
+        chunk.getEntities()[index] = moved;
+        lastChunk.getEntities()[lastIndex] = null;
+        for (int column = componentIds.length; --column >= 0; ) {
+            final EcsValueMapping valueMapping = valueMappings[column];
+            if (valueMapping != null) {
+                if (row != last) {
+                    valueMapping.copy(lastChunk.getData(column), lastIndex, chunk.getData(column), index);
+                }
+            } else {
+                final Object[] lastValues = lastChunk.getColumn(column);
+                chunk.getColumn(column)[index] = lastValues[lastIndex];
+                lastValues[lastIndex] = null;
+            }
+        }
+        if (row != last) {
+            moved.setRow(row);
+        }
+        if (lastIndex == 0) {
+            chunkCount--;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.dru.dusap.ecs;
+
+import java.util.Arrays;
+
+final class EcsArrayBitSet extends EcsBitSet {
+    private final long[] words;
+
+    EcsArrayBitSet(final int wordCount) {
+        words = new long[wordCount];
+    }
+
+    @Override
+    public boolean get(final int pos) {
+        final int index = index(pos);
+        return index < words.length && (words[index] & bitval(pos)) != 0L;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    @Override
+    int getWordCount() {
+        return words.length;
+    }
+
+    @Override
+    long getWord(final int index) {
+        return words[index];
+    }
+
+    @Override
+    void setWord(final int index, final long value) {
+        words[index] = value;
+    }
+}
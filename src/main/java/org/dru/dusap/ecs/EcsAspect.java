@@ -7,11 +7,25 @@ public final class EcsAspect implements Predicate<EcsEntity> {
     private final EcsBitSet allOf;
     private final EcsBitSet anyOf;
     private final EcsBitSet noneOf;
+    private final EcsMatcher matcher;
 
-    EcsAspect(final EcsBitSet allOf, final EcsBitSet anyOf, final EcsBitSet noneOf) {
+    EcsAspect(final EcsBitSet allOf, final EcsBitSet anyOf, final EcsBitSet noneOf, final EcsMatcher matcher) {
         this.allOf = allOf;
         this.anyOf = anyOf;
         this.noneOf = noneOf;
+        this.matcher = matcher;
+    }
+
+    EcsBitSet getAllOf() {
+        return allOf;
+    }
+
+    EcsBitSet getAnyOf() {
+        return anyOf;
+    }
+
+    EcsBitSet getNoneOf() {
+        return noneOf;
     }
 
     @Override
@@ -19,9 +33,9 @@ public final class EcsAspect implements Predicate<EcsEntity> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         final EcsAspect aspect = (EcsAspect) o;
-        return allOf.equals(aspect.allOf) &&
-                anyOf.equals(aspect.anyOf) &&
-                noneOf.equals(aspect.noneOf);
+        return Objects.equals(allOf, aspect.allOf) &&
+                Objects.equals(anyOf, aspect.anyOf) &&
+                Objects.equals(noneOf, aspect.noneOf);
     }
 
     @Override
@@ -31,8 +45,10 @@ public final class EcsAspect implements Predicate<EcsEntity> {
 
     @Override
     public boolean test(final EcsEntity entity) {
-        return (allOf == null || entity.getBitSet().containsAll(allOf))
-                && (anyOf == null || entity.getBitSet().intersects(anyOf))
-                && (noneOf == null || !entity.getBitSet().intersects(noneOf));
+        return test(entity.getBitSet());
+    }
+
+    boolean test(final EcsBitSet bitSet) {
+        return matcher.test(bitSet);
     }
 }
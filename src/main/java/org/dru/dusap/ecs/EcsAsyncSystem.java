@@ -0,0 +1,196 @@
+package org.dru.dusap.ecs;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+public abstract class EcsAsyncSystem<I> extends EcsSystem {
+    private final int maxConcurrency;
+    private final int batchSize;
+    private final Executor executor;
+    private final Semaphore permits;
+    private final Queue<Batch> results;
+    private final Queue<Batch> discarded;
+    private final AtomicReference<Throwable> failure;
+    private final List<Batch> merged;
+    private final ArrayDeque<Batch> freeBatches;
+    private final long[] pendingHandles;
+    private final List<I> pendingInputs;
+    private long[] inFlight;
+    private volatile int inFlightCount;
+    private boolean saturated;
+
+    protected EcsAsyncSystem(final int maxConcurrency, final Executor executor) {
+        this(maxConcurrency, 1, executor);
+    }
+
+    protected EcsAsyncSystem(final int maxConcurrency, final int batchSize, final Executor executor) {
+        Objects.requireNonNull(executor, "executor");
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency has to be 1 or greater: " + maxConcurrency);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize has to be 1 or greater: " + batchSize);
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.batchSize = batchSize;
+        this.executor = executor;
+        permits = new Semaphore(maxConcurrency);
+        results = new ConcurrentLinkedQueue<>();
+        discarded = new ConcurrentLinkedQueue<>();
+        failure = new AtomicReference<>();
+        merged = new ArrayList<>();
+        freeBatches = new ArrayDeque<>();
+        pendingHandles = new long[batchSize];
+        pendingInputs = new ArrayList<>(batchSize);
+        inFlight = new long[0];
+        inFlightCount = 0;
+    }
+
+    public final int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public final int getBatchSize() {
+        return batchSize;
+    }
+
+    public final int getInFlightCount() {
+        return inFlightCount;
+    }
+
+    @Override
+    protected final void update() {
+        Batch batch;
+        while ((batch = discarded.poll()) != null) {
+            batch.result.clear();
+            release(batch);
+        }
+        final Throwable cause = failure.getAndSet(null);
+        if (cause != null) {
+            throw new IllegalStateException("async task failed", cause);
+        }
+        while ((batch = results.poll()) != null) {
+            batch.result.drainTo(getCommandBuffer());
+            merged.add(batch);
+        }
+        saturated = false;
+        forEach(entity -> {
+            if (saturated || isInFlight(entity.getHandle())) {
+                return;
+            }
+            final I input = capture(entity);
+            if (input == null) {
+                return;
+            }
+            pendingHandles[pendingInputs.size()] = entity.getHandle();
+            pendingInputs.add(input);
+            if (pendingInputs.size() == batchSize && !submit()) {
+                saturated = true;
+            }
+        });
+        if (!saturated && !pendingInputs.isEmpty()) {
+            submit();
+        }
+        pendingInputs.clear();
+        for (final Batch done : merged) {
+            release(done);
+        }
+        merged.clear();
+    }
+
+    protected abstract I capture(EcsEntity entity);
+
+    protected abstract void process(long handle, I input, EcsCommandBuffer results) throws Exception;
+
+    private boolean isInFlight(final long handle) {
+        final int index = EcsHandle.index(handle);
+        return index < inFlight.length && inFlight[index] == handle;
+    }
+
+    private boolean submit() {
+        if (!permits.tryAcquire()) {
+            pendingInputs.clear();
+            return false;
+        }
+        Batch batch = freeBatches.pollLast();
+        if (batch == null) {
+            batch = new Batch();
+        }
+        batch.size = pendingInputs.size();
+        System.arraycopy(pendingHandles, 0, batch.handles, 0, batch.size);
+        batch.inputs.addAll(pendingInputs);
+        pendingInputs.clear();
+        for (int position = 0; position < batch.size; position++) {
+            final long handle = batch.handles[position];
+            final int index = EcsHandle.index(handle);
+            if (index >= inFlight.length) {
+                final int length = inFlight.length;
+                final int newLength = Math.max(index + 1, (length + 1) * 3 / 2);
+                inFlight = Arrays.copyOf(inFlight, newLength);
+                Arrays.fill(inFlight, length, newLength, EcsHandle.NONE);
+            }
+            inFlight[index] = handle;
+        }
+        inFlightCount += batch.size;
+        try {
+            executor.execute(batch);
+        } catch (final RejectedExecutionException exc) {
+            permits.release();
+            release(batch);
+            throw exc;
+        }
+        return true;
+    }
+
+    private void release(final Batch batch) {
+        for (int position = 0; position < batch.size; position++) {
+            final long handle = batch.handles[position];
+            final int index = EcsHandle.index(handle);
+            if (inFlight[index] == handle) {
+                inFlight[index] = EcsHandle.NONE;
+            }
+        }
+        inFlightCount -= batch.size;
+        batch.inputs.clear();
+        batch.size = 0;
+        freeBatches.add(batch);
+    }
+
+    private final class Batch implements Runnable {
+        private final long[] handles;
+        private final List<I> inputs;
+        private final EcsCommandBuffer result;
+        private int size;
+
+        private Batch() {
+            handles = new long[batchSize];
+            inputs = new ArrayList<>(batchSize);
+            result = new EcsCommandBuffer(getEngine());
+            size = 0;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int index = 0; index < size; index++) {
+                    process(handles[index], inputs.get(index), result);
+                }
+                results.add(this);
+            } catch (final Throwable exc) {
+                discarded.add(this);
+                failure.compareAndSet(null, exc);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+}
@@ -1,49 +1,94 @@
 package org.dru.dusap.ecs;
 
-import java.util.concurrent.atomic.AtomicLongArray;
+public class EcsBitSet {
+    public static EcsBitSet create(final int sizeInBits) {
+        if (sizeInBits < 0) {
+            throw new IllegalArgumentException("negative size: " + sizeInBits);
+        }
+        final int wordCount = Math.max(1, (sizeInBits + 63) >> 6);
+        switch (wordCount) {
+            case 1:
+                return new EcsWordBitSet();
+            case 2:
+                return new EcsDoubleWordBitSet();
+            default:
+                return new EcsArrayBitSet(wordCount);
+        }
+    }
 
-public final class EcsBitSet {
-    private final AtomicLongArray data;
+    private final EcsBitSet delegate;
 
+    /**
+     * @deprecated use {@link #create(int)}, which picks a word-specialized implementation; this constructor only
+     * keeps existing callers compiling and forwards every operation to such an instance.
+     */
+    @Deprecated
     public EcsBitSet(final int sizeInBits) {
-        data = new AtomicLongArray((sizeInBits >> 6) + 1);
+        delegate = create(sizeInBits);
     }
 
-    private boolean get(final int index, final long bitval) {
-        return (data.get(index) & bitval) != 0L;
+    EcsBitSet() {
+        delegate = null;
     }
 
     public boolean get(final int pos) {
-        return get(index(pos), bitval(pos));
+        final int index = index(pos);
+        return index < getWordCount() && (getWord(index) & bitval(pos)) != 0L;
     }
 
     public void set(final int pos) {
-        final long bitval = bitval(pos);
-        data.updateAndGet(index(pos), value -> value | bitval);
+        final int index = index(pos);
+        setWord(index, getWord(index) | bitval(pos));
     }
 
     public boolean getAndSet(final int pos) {
+        final int index = index(pos);
+        final long value = getWord(index);
         final long bitval = bitval(pos);
-        return (data.getAndUpdate(index(pos), value -> value | bitval) & bitval) != 0L;
+        setWord(index, value | bitval);
+        return (value & bitval) != 0L;
     }
 
     public boolean setIfCleared(final int pos) {
-        final int index = index(pos);
-        final long bitval = bitval(pos);
-        final long value = data.get(index);
-        return (data.compareAndSet(index, value & ~bitval, value | bitval));
+        return !getAndSet(pos);
     }
 
     public boolean clearIfSet(final int pos) {
         final int index = index(pos);
+        if (index >= getWordCount()) {
+            return false;
+        }
+        final long value = getWord(index);
         final long bitval = bitval(pos);
-        final long value = data.get(index);
-        return (data.compareAndSet(index, value | bitval, value & ~bitval));
+        setWord(index, value & ~bitval);
+        return (value & bitval) != 0L;
+    }
+
+    public int nextSetBit(final int fromPos) {
+        int index = index(fromPos);
+        final int wordCount = getWordCount();
+        if (index >= wordCount) {
+            return -1;
+        }
+        long value = getWord(index) & (-1L << (fromPos & 63));
+        while (value == 0L) {
+            if (++index >= wordCount) {
+                return -1;
+            }
+            value = getWord(index);
+        }
+        return (index << 6) + Long.numberOfTrailingZeros(value);
+    }
+
+    public void clear() {
+        for (int index = getWordCount(); --index >= 0; ) {
+            setWord(index, 0L);
+        }
     }
 
     public boolean intersects(final EcsBitSet other) {
-        for (int index = Math.min(data.length(), other.data.length()); --index >= 0; ) {
-            if ((data.get(index) & other.data.get(index)) != 0L) {
+        for (int index = Math.min(getWordCount(), other.getWordCount()); --index >= 0; ) {
+            if ((getWord(index) & other.getWord(index)) != 0L) {
                 return true;
             }
         }
@@ -51,27 +96,67 @@ public final class EcsBitSet {
     }
 
     public boolean containsAll(final EcsBitSet other) {
-        final int dataLength = data.length();
-        final int otherDataLength = other.data.length();
-        for (int index = dataLength; index < otherDataLength; index++) {
-            if (other.data.get(index) != 0L) {
+        final int wordCount = getWordCount();
+        for (int index = other.getWordCount(); --index >= 0; ) {
+            final long value = other.getWord(index);
+            if (value != 0L && (index >= wordCount || (getWord(index) & value) != value)) {
                 return false;
             }
         }
-        for (int index = Math.min(dataLength, otherDataLength); --index >= 0; ) {
-            final long value = data.get(index);
-            if ((value & other.data.get(index)) != value) {
+        return true;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EcsBitSet)) return false;
+        final EcsBitSet bitSet = (EcsBitSet) o;
+        for (int index = Math.max(getWordCount(), bitSet.getWordCount()); --index >= 0; ) {
+            if (word(index) != bitSet.word(index)) {
                 return false;
             }
         }
         return true;
     }
 
-    private int index(final int pos) {
+    @Override
+    public int hashCode() {
+        long hash = 1234L;
+        for (int index = getWordCount(); --index >= 0; ) {
+            hash ^= getWord(index) * (index + 1);
+        }
+        return (int) ((hash >> 32) ^ hash);
+    }
+
+    EcsBitSet copy() {
+        final EcsBitSet result = create(getWordCount() << 6);
+        for (int index = getWordCount(); --index >= 0; ) {
+            result.setWord(index, getWord(index));
+        }
+        return result;
+    }
+
+    int getWordCount() {
+        return delegate.getWordCount();
+    }
+
+    long getWord(final int index) {
+        return delegate.getWord(index);
+    }
+
+    void setWord(final int index, final long value) {
+        delegate.setWord(index, value);
+    }
+
+    private long word(final int index) {
+        return (index < getWordCount() ? getWord(index) : 0L);
+    }
+
+    static int index(final int pos) {
         return pos >> 6;
     }
 
-    private long bitval(final int pos) {
+    static long bitval(final int pos) {
         return 1L << (pos & 63);
     }
 }
@@ -0,0 +1,181 @@
+package org.dru.dusap.ecs;
+
+import java.util.Arrays;
+
+final class EcsBucketTable {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] heads;
+    private boolean[] used;
+    private int usedCount;
+    private int[] slots;
+    private int[] next;
+    private int[] prev;
+
+    EcsBucketTable() {
+        keys = new long[MIN_CAPACITY];
+        heads = new int[MIN_CAPACITY];
+        used = new boolean[MIN_CAPACITY];
+        usedCount = 0;
+        slots = new int[0];
+        next = new int[0];
+        prev = new int[0];
+    }
+
+    int getCapacity() {
+        return keys.length;
+    }
+
+    boolean isUsed(final int slot) {
+        return used[slot];
+    }
+
+    int getHead(final int slot) {
+        return heads[slot];
+    }
+
+    int getNext(final int id) {
+        return next[id];
+    }
+
+    boolean contains(final int id) {
+        return id < slots.length && slots[id] != -1;
+    }
+
+    long getKey(final int id) {
+        return keys[slots[id]];
+    }
+
+    int find(final long key) {
+        final int slot = findSlot(key);
+        return (slot != -1 ? heads[slot] : -1);
+    }
+
+    void add(final int id, final long key) {
+        ensureCapacity(id + 1);
+        final int slot = getSlot(key);
+        final int head = heads[slot];
+        prev[id] = -1;
+        next[id] = head;
+        if (head != -1) {
+            prev[head] = id;
+        }
+        heads[slot] = id;
+        slots[id] = slot;
+    }
+
+    void remove(final int id) {
+        final int slot = slots[id];
+        final int previous = prev[id];
+        final int following = next[id];
+        if (previous != -1) {
+            next[previous] = following;
+        } else {
+            heads[slot] = following;
+        }
+        if (following != -1) {
+            prev[following] = previous;
+        }
+        slots[id] = -1;
+    }
+
+    void move(final int id, final long key) {
+        if (keys[slots[id]] != key) {
+            remove(id);
+            add(id, key);
+        }
+    }
+
+    void clear() {
+        keys = new long[MIN_CAPACITY];
+        heads = new int[MIN_CAPACITY];
+        used = new boolean[MIN_CAPACITY];
+        usedCount = 0;
+        Arrays.fill(slots, -1);
+    }
+
+    private int findSlot(final long key) {
+        final int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int getSlot(final long key) {
+        final int slot = findSlot(key);
+        if (slot != -1) {
+            return slot;
+        }
+        if ((usedCount + 1) * 4 > keys.length * 3) {
+            rehash();
+        }
+        final int result = freeSlot(key);
+        keys[result] = key;
+        heads[result] = -1;
+        used[result] = true;
+        usedCount++;
+        return result;
+    }
+
+    private int freeSlot(final long key) {
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (used[slot]) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        int occupied = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot] && heads[slot] != -1) {
+                occupied++;
+            }
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < (occupied + 1) * 3) {
+            capacity <<= 1;
+        }
+        final long[] oldKeys = keys;
+        final int[] oldHeads = heads;
+        final boolean[] oldUsed = used;
+        keys = new long[capacity];
+        heads = new int[capacity];
+        used = new boolean[capacity];
+        usedCount = 0;
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            final int head = oldHeads[oldSlot];
+            if (!oldUsed[oldSlot] || head == -1) {
+                continue;
+            }
+            final int slot = freeSlot(oldKeys[oldSlot]);
+            keys[slot] = oldKeys[oldSlot];
+            heads[slot] = head;
+            used[slot] = true;
+            usedCount++;
+            for (int id = head; id != -1; id = next[id]) {
+                slots[id] = slot;
+            }
+        }
+    }
+
+    private void ensureCapacity(final int capacity) {
+        final int length = slots.length;
+        if (capacity > length) {
+            final int newLength = Math.max(capacity, (length + 1) * 3 / 2);
+            slots = Arrays.copyOf(slots, newLength);
+            Arrays.fill(slots, length, newLength, -1);
+            next = Arrays.copyOf(next, newLength);
+            prev = Arrays.copyOf(prev, newLength);
+        }
+    }
+
+    private static int hash(final long key) {
+        return (int) ((key * 0x9e3779b97f4a7c15L) >>> 32);
+    }
+}
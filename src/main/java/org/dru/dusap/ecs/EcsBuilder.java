@@ -7,6 +7,11 @@ public final class EcsBuilder {
     private EcsBitSet allOff;
     private EcsBitSet anyOff;
     private EcsBitSet noneOff;
+    private EcsBitSet reads;
+    private EcsBitSet writes;
+    private EcsBitSet added;
+    private EcsBitSet changed;
+    private EcsBitSet removed;
 
     EcsBuilder(final EcsEngine engine) {
         this.engine = engine;
@@ -30,13 +35,64 @@ public final class EcsBuilder {
         return this;
     }
 
+    @SuppressWarnings("UnusedReturnValue")
+    public EcsBuilder reads(final Class<?> firstComponentClass, final Class<?>... restComponentClasses) {
+        reads = setInBitSet(reads, firstComponentClass, restComponentClasses);
+        return this;
+    }
+
+    @SuppressWarnings("UnusedReturnValue")
+    public EcsBuilder writes(final Class<?> firstComponentClass, final Class<?>... restComponentClasses) {
+        writes = setInBitSet(writes, firstComponentClass, restComponentClasses);
+        reads = setInBitSet(reads, firstComponentClass, restComponentClasses);
+        return this;
+    }
+
+    @SuppressWarnings("UnusedReturnValue")
+    public EcsBuilder added(final Class<?> firstComponentClass, final Class<?>... restComponentClasses) {
+        added = setInBitSet(added, firstComponentClass, restComponentClasses);
+        return this;
+    }
+
+    @SuppressWarnings("UnusedReturnValue")
+    public EcsBuilder changed(final Class<?> firstComponentClass, final Class<?>... restComponentClasses) {
+        changed = setInBitSet(changed, firstComponentClass, restComponentClasses);
+        return this;
+    }
+
+    @SuppressWarnings("UnusedReturnValue")
+    public EcsBuilder removed(final Class<?> firstComponentClass, final Class<?>... restComponentClasses) {
+        removed = setInBitSet(removed, firstComponentClass, restComponentClasses);
+        return this;
+    }
+
+    EcsBitSet getReads() {
+        return reads;
+    }
+
+    EcsBitSet getWrites() {
+        return writes;
+    }
+
+    EcsBitSet getAdded() {
+        return added;
+    }
+
+    EcsBitSet getChanged() {
+        return changed;
+    }
+
+    EcsBitSet getRemoved() {
+        return removed;
+    }
+
     EcsAspect getAspect() {
-        return new EcsAspect(allOff, anyOff, noneOff);
+        return new EcsAspect(allOff, anyOff, noneOff, EcsMatcher.compile(allOff, anyOff, noneOff));
     }
 
     private EcsBitSet setInBitSet(final EcsBitSet bitSet, final Class<?> firstComponentClass,
                                   final Class<?>... restComponentClasses) {
-        final EcsBitSet result = (bitSet != null ? bitSet : new EcsBitSet(engine.getMaxComponentCount()));
+        final EcsBitSet result = (bitSet != null ? bitSet : EcsBitSet.create(engine.getMaxComponentCount()));
         result.set(engine.getMapping(firstComponentClass).getId());
         Stream.of(restComponentClasses).forEach(componentClass ->
                 result.set(engine.getMapping(componentClass).getId()));
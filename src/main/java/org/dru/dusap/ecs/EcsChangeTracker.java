@@ -0,0 +1,224 @@
+package org.dru.dusap.ecs;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
+
+final class EcsChangeTracker {
+    static final int ADDED = 0;
+    static final int CHANGED = 1;
+    static final int REMOVED = 2;
+    static final int PAGE_SHIFT = EcsArchetype.CHUNK_SHIFT;
+    static final int PAGE_CAPACITY = 1 << PAGE_SHIFT;
+    static final int PAGE_MASK = PAGE_CAPACITY - 1;
+
+    private final int componentId;
+    private final List<EcsSystem> subscribers;
+    private final List<IntSupplier> readers;
+    private final List<Consumer<EcsEntity>> listeners;
+    private volatile int[][] pages;
+    private long[] logHandles;
+    private int[] logTicks;
+    private byte[] logKinds;
+    private int logSize;
+    private int lastTick;
+
+    EcsChangeTracker(final int componentId, final int capacity) {
+        this.componentId = componentId;
+        subscribers = new CopyOnWriteArrayList<>();
+        readers = new CopyOnWriteArrayList<>();
+        listeners = new CopyOnWriteArrayList<>();
+        final int[][] pages = new int[(capacity + PAGE_MASK) >> PAGE_SHIFT][];
+        for (int index = 0; index < pages.length; index++) {
+            pages[index] = new int[PAGE_CAPACITY << 1];
+        }
+        this.pages = pages;
+        logHandles = new long[0];
+        logTicks = new int[0];
+        logKinds = new byte[0];
+        logSize = 0;
+        lastTick = 0;
+    }
+
+    int getComponentId() {
+        return componentId;
+    }
+
+    void subscribe(final EcsSystem system) {
+        subscribers.add(system);
+    }
+
+    void unsubscribe(final EcsSystem system) {
+        subscribers.remove(system);
+    }
+
+    void addReader(final IntSupplier reader) {
+        readers.add(reader);
+    }
+
+    void removeReader(final IntSupplier reader) {
+        readers.remove(reader);
+    }
+
+    void addListener(final Consumer<EcsEntity> listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(final Consumer<EcsEntity> listener) {
+        listeners.remove(listener);
+    }
+
+    int getAddedTick(final int entityId) {
+        final int[] page = findPage(entityId);
+        return (page != null ? page[(entityId & PAGE_MASK) << 1] : 0);
+    }
+
+    int getChangedTick(final int entityId) {
+        final int[] page = findPage(entityId);
+        return (page != null ? page[((entityId & PAGE_MASK) << 1) + 1] : 0);
+    }
+
+    int getLastTick() {
+        return lastTick;
+    }
+
+    void added(final EcsEntity entity, final int tick) {
+        final int entityId = entity.getId();
+        final int[] page = getPage(entityId);
+        final int index = (entityId & PAGE_MASK) << 1;
+        page[index] = tick;
+        page[index + 1] = tick;
+        lastTick = tick;
+        append(entity.getHandle(), tick, ADDED);
+        notifyListeners(entity);
+    }
+
+    void changed(final EcsEntity entity, final int tick) {
+        final int entityId = entity.getId();
+        final int[] page = getPage(entityId);
+        final int index = ((entityId & PAGE_MASK) << 1) + 1;
+        if (page[index] != tick) {
+            page[index] = tick;
+            lastTick = tick;
+            append(entity.getHandle(), tick, CHANGED);
+        }
+        notifyListeners(entity);
+    }
+
+    void removed(final EcsEntity entity, final int tick) {
+        final int entityId = entity.getId();
+        final int[] page = findPage(entityId);
+        if (page != null) {
+            final int index = (entityId & PAGE_MASK) << 1;
+            page[index] = 0;
+            page[index + 1] = 0;
+        }
+        lastTick = tick;
+        append(entity.getHandle(), tick, REMOVED);
+    }
+
+    synchronized void collect(final int sinceTick, final int kind, final LongConsumer action) {
+        for (int index = 0; index < logSize; index++) {
+            if (logTicks[index] - sinceTick > 0 && matches(index, kind)) {
+                action.accept(logHandles[index]);
+            }
+        }
+    }
+
+    synchronized void trim() {
+        if (!isLogged()) {
+            logSize = 0;
+            return;
+        }
+        int minTick = 0;
+        boolean first = true;
+        for (final EcsSystem subscriber : subscribers) {
+            final int tick = subscriber.getChangeTick();
+            if (first || tick - minTick < 0) {
+                minTick = tick;
+                first = false;
+            }
+        }
+        for (final IntSupplier reader : readers) {
+            final int tick = reader.getAsInt();
+            if (first || tick - minTick < 0) {
+                minTick = tick;
+                first = false;
+            }
+        }
+        int size = 0;
+        for (int index = 0; index < logSize; index++) {
+            if (logTicks[index] - minTick > 0 && matches(index, logKinds[index])) {
+                logHandles[size] = logHandles[index];
+                logTicks[size] = logTicks[index];
+                logKinds[size] = logKinds[index];
+                size++;
+            }
+        }
+        logSize = size;
+    }
+
+    private void notifyListeners(final EcsEntity entity) {
+        for (final Consumer<EcsEntity> listener : listeners) {
+            listener.accept(entity);
+        }
+    }
+
+    private boolean matches(final int index, final int kind) {
+        final int logKind = logKinds[index];
+        if (kind == REMOVED || logKind == REMOVED) {
+            return logKind == kind;
+        }
+        final int entityId = EcsHandle.index(logHandles[index]);
+        if (kind == ADDED) {
+            return logKind == ADDED && getAddedTick(entityId) == logTicks[index];
+        }
+        return getChangedTick(entityId) == logTicks[index];
+    }
+
+    private boolean isLogged() {
+        return !subscribers.isEmpty() || !readers.isEmpty();
+    }
+
+    private synchronized void append(final long handle, final int tick, final int kind) {
+        if (!isLogged()) {
+            return;
+        }
+        if (logSize >= logHandles.length) {
+            final int newLength = (logSize + 1) * 3 / 2;
+            logHandles = Arrays.copyOf(logHandles, newLength);
+            logTicks = Arrays.copyOf(logTicks, newLength);
+            logKinds = Arrays.copyOf(logKinds, newLength);
+        }
+        logHandles[logSize] = handle;
+        logTicks[logSize] = tick;
+        logKinds[logSize] = (byte) kind;
+        logSize++;
+    }
+
+    private int[] findPage(final int entityId) {
+        final int[][] pages = this.pages;
+        final int index = entityId >> PAGE_SHIFT;
+        return (index < pages.length ? pages[index] : null);
+    }
+
+    private int[] getPage(final int entityId) {
+        final int[] page = findPage(entityId);
+        return (page != null ? page : allocatePage(entityId >> PAGE_SHIFT));
+    }
+
+    private synchronized int[] allocatePage(final int index) {
+        int[][] pages = this.pages;
+        if (index < pages.length && pages[index] != null) {
+            return pages[index];
+        }
+        pages = Arrays.copyOf(pages, Math.max(pages.length, (index + 1) * 3 / 2));
+        final int[] result = new int[PAGE_CAPACITY << 1];
+        pages[index] = result;
+        this.pages = pages;
+        return result;
+    }
+}
@@ -0,0 +1,45 @@
+package org.dru.dusap.ecs;
+
+final class EcsChunk {
+    private final EcsEntity[] entities;
+    private final int[] columnIndexes;
+    private final Object[] columns;
+
+    EcsChunk(final int capacity, final int[] columnIndexes, final EcsValueMapping[] valueMappings) {
+        entities = new EcsEntity[capacity];
+        this.columnIndexes = columnIndexes;
+        columns = new Object[valueMappings.length];
+        for (int column = 0; column < columns.length; column++) {
+            final EcsValueMapping valueMapping = valueMappings[column];
+            columns[column] = (valueMapping != null ? valueMapping.newColumn(capacity) : new Object[capacity]);
+        }
+    }
+
+    EcsEntity[] getEntities() {
+        return entities;
+    }
+
+    Object[] getColumn(final int column) {
+        return (Object[]) columns[column];
+    }
+
+    Object getData(final int column) {
+        return columns[column];
+    }
+
+    int getColumnCount() {
+        return columns.length;
+    }
+
+    Object get(final int componentId, final int index) {
+        return ((Object[]) columns[columnIndexes[componentId]])[index];
+    }
+
+    void set(final int componentId, final int index, final Object component) {
+        ((Object[]) columns[columnIndexes[componentId]])[index] = component;
+    }
+
+    Object getValues(final int componentId) {
+        return columns[columnIndexes[componentId]];
+    }
+}
@@ -0,0 +1,8 @@
+package org.dru.dusap.ecs;
+
+@FunctionalInterface
+public interface EcsClock {
+    EcsClock SYSTEM = System::nanoTime;
+
+    long nanoTime();
+}
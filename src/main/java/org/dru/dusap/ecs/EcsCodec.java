@@ -0,0 +1,9 @@
+package org.dru.dusap.ecs;
+
+import java.nio.ByteBuffer;
+
+public interface EcsCodec<T> {
+    void encode(T component, ByteBuffer target);
+
+    T decode(ByteBuffer source);
+}
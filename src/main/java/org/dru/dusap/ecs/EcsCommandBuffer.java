@@ -0,0 +1,285 @@
+package org.dru.dusap.ecs;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+public final class EcsCommandBuffer {
+    private static final int CREATE = 0;
+    private static final int DESTROY = 1;
+    private static final int SET = 2;
+    private static final int CLEAR = 3;
+    private static final int VALUE = 4;
+
+    private final EcsEngine engine;
+    private long[] handles;
+    private int[] codes;
+    private Object[] values;
+    private long[] bits;
+    private int size;
+    private long[] keys;
+    private EcsBitSet changed;
+    private int epoch;
+
+    EcsCommandBuffer(final EcsEngine engine) {
+        Objects.requireNonNull(engine, "engine");
+        this.engine = engine;
+        handles = new long[0];
+        codes = new int[0];
+        values = new Object[0];
+        bits = new long[0];
+        size = 0;
+        keys = new long[0];
+        epoch = 0;
+    }
+
+    public EcsEngine getEngine() {
+        return engine;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long create(final Consumer<EcsEntity> builder) {
+        Objects.requireNonNull(builder, "builder");
+        final EcsEntity entity = engine.allocateEntity();
+        final long handle = entity.getHandle();
+        append(handle, CREATE, 0, builder);
+        return handle;
+    }
+
+    public void destroy(final long handle) {
+        append(handle, DESTROY, 0, null);
+    }
+
+    public void destroy(final EcsEntity entity) {
+        destroy(checkEntity(entity).getHandle());
+    }
+
+    public <T> void setComponent(final long handle, final EcsMapping<T> mapping, final T component) {
+        Objects.requireNonNull(component, "component");
+        append(handle, SET, checkMapping(mapping).getId(), component);
+    }
+
+    public <T> void setComponent(final EcsEntity entity, final EcsMapping<T> mapping, final T component) {
+        setComponent(checkEntity(entity).getHandle(), mapping, component);
+    }
+
+    public void setComponent(final long handle, final Object component) {
+        Objects.requireNonNull(component, "component");
+        append(handle, SET, checkMapping(engine.getMapping(component.getClass())).getId(), component);
+    }
+
+    public void setComponent(final EcsEntity entity, final Object component) {
+        setComponent(checkEntity(entity).getHandle(), component);
+    }
+
+    public void clearComponent(final long handle, final EcsMapping<?> mapping) {
+        Objects.requireNonNull(mapping, "mapping");
+        if (mapping.getEngine() != engine) {
+            throw new IllegalArgumentException("engine mismatch");
+        }
+        append(handle, CLEAR, mapping.getId(), null);
+    }
+
+    public void clearComponent(final EcsEntity entity, final EcsMapping<?> mapping) {
+        clearComponent(checkEntity(entity).getHandle(), mapping);
+    }
+
+    public void clearComponent(final long handle, final Class<?> type) {
+        clearComponent(handle, engine.getMapping(type));
+    }
+
+    public void clearComponent(final EcsEntity entity, final Class<?> type) {
+        clearComponent(checkEntity(entity).getHandle(), type);
+    }
+
+    void setComponent(final long handle, final int componentId, final Object component) {
+        append(handle, SET, componentId, component);
+    }
+
+    void clearComponent(final long handle, final int componentId) {
+        append(handle, CLEAR, componentId, null);
+    }
+
+    void setValue(final long handle, final EcsValueMapping valueMapping, final long value) {
+        append(handle, VALUE, valueMapping.getId(), valueMapping, value);
+    }
+
+    public void clear() {
+        for (int index = 0; index < size; index++) {
+            if ((codes[index] >>> 24) == CREATE && engine.isAlive(handles[index])) {
+                final EcsEntity entity = engine.getEntity(handles[index]);
+                if (!engine.hasEntity(entity)) {
+                    engine.releaseEntity(entity);
+                }
+            }
+        }
+        reset();
+    }
+
+    int getEpoch() {
+        return epoch;
+    }
+
+    void setEpoch(final int epoch) {
+        this.epoch = epoch;
+    }
+
+    void add(final EcsEntity entity) {
+        append(entity.getHandle(), CREATE, 0, null);
+    }
+
+    void drainTo(final EcsCommandBuffer target) {
+        for (int index = 0; index < size; index++) {
+            target.append(handles[index], codes[index] >>> 24, codes[index] & 0xffffff, values[index], bits[index]);
+        }
+        reset();
+    }
+
+    void apply() {
+        if (size == 0) {
+            return;
+        }
+        if (keys.length < size) {
+            keys = new long[handles.length];
+        }
+        for (int index = 0; index < size; index++) {
+            keys[index] = ((long) EcsHandle.index(handles[index]) << 32) | index;
+        }
+        Arrays.sort(keys, 0, size);
+        if (changed == null) {
+            changed = EcsBitSet.create(engine.getMaxComponentCount());
+        }
+        int start = 0;
+        while (start < size) {
+            int end = start + 1;
+            while (end < size && (keys[end] >>> 32) == (keys[start] >>> 32)) {
+                end++;
+            }
+            applyGroup(start, end);
+            start = end;
+        }
+        reset();
+    }
+
+    private void applyGroup(final int start, final int end) {
+        changed.clear();
+        EcsEntity entity = null;
+        EcsArchetype source = null;
+        boolean added = false;
+        boolean destroyed = false;
+        for (int key = start; key < end && !destroyed; key++) {
+            final int index = (int) keys[key];
+            final long handle = handles[index];
+            if (!engine.isAlive(handle)) {
+                continue;
+            }
+            if (entity == null) {
+                entity = engine.getEntity(handle);
+                source = entity.getArchetype();
+            }
+            final int componentId = codes[index] & 0xffffff;
+            switch (codes[index] >>> 24) {
+                case CREATE:
+                    build(entity, values[index]);
+                    added = true;
+                    break;
+                case DESTROY:
+                    destroyed = true;
+                    break;
+                case SET:
+                    if (entity.putComponent(componentId, values[index])) {
+                        changed.set(componentId);
+                    }
+                    break;
+                case CLEAR:
+                    if (entity.removeComponent(componentId)) {
+                        changed.set(componentId);
+                    }
+                    break;
+                case VALUE:
+                    if (entity.putComponent(componentId, null)) {
+                        changed.set(componentId);
+                    }
+                    ((EcsValueMapping) values[index]).load(entity, bits[index]);
+                    break;
+                default:
+                    throw new IllegalStateException("unknown command: " + codes[index]);
+            }
+        }
+        if (entity == null) {
+            return;
+        }
+        final boolean inEngine = engine.hasEntity(entity);
+        if (destroyed) {
+            if (inEngine) {
+                engine.removeEntityNow(entity);
+            } else {
+                engine.releaseEntity(entity);
+            }
+        } else if (!inEngine) {
+            if (added) {
+                engine.addEntityNow(entity);
+            }
+        } else {
+            engine.componentsChanged(entity, source, changed);
+        }
+    }
+
+    private void reset() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void build(final EcsEntity entity, final Object builder) {
+        if (builder != null) {
+            ((Consumer<EcsEntity>) builder).accept(entity);
+        }
+    }
+
+    private void append(final long handle, final int op, final int componentId, final Object value) {
+        append(handle, op, componentId, value, 0L);
+    }
+
+    private void append(final long handle, final int op, final int componentId, final Object value,
+                        final long bitsValue) {
+        if (size >= handles.length) {
+            final int newLength = (size + 1) * 3 / 2;
+            handles = Arrays.copyOf(handles, newLength);
+            codes = Arrays.copyOf(codes, newLength);
+            values = Arrays.copyOf(values, newLength);
+            bits = Arrays.copyOf(bits, newLength);
+        }
+        handles[size] = handle;
+        codes[size] = (op << 24) | componentId;
+        values[size] = value;
+        bits[size] = bitsValue;
+        size++;
+    }
+
+    private EcsEntity checkEntity(final EcsEntity entity) {
+        Objects.requireNonNull(entity, "entity");
+        if (entity.getEngine() != engine) {
+            throw new IllegalArgumentException("engine mismatch");
+        }
+        return entity;
+    }
+
+    private <T> EcsMapping<T> checkMapping(final EcsMapping<T> mapping) {
+        Objects.requireNonNull(mapping, "mapping");
+        if (mapping.getEngine() != engine) {
+            throw new IllegalArgumentException("engine mismatch");
+        }
+        if (mapping.getValueMapping() != null) {
+            throw new IllegalArgumentException("component is value mapped: " + mapping.getType().getName());
+        }
+        return mapping;
+    }
+}
@@ -0,0 +1,197 @@
+package org.dru.dusap.ecs;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Base of the component indexes. Changes to indexed components and family membership are queued and folded into the
+ * index when the engine finishes {@link EcsEngine#update()}; lookups made between updates refresh first. Lookups made
+ * while an update is running, including from systems, therefore see the state as of the end of the previous update.
+ */
+abstract class EcsComponentIndex<T> implements AutoCloseable {
+    private final EcsEngine engine;
+    private final EcsMapping<T> mapping;
+    private final EcsFamily family;
+    private final Consumer<EcsEntity> onEntityAdded;
+    private final Consumer<EcsEntity> onEntityRemoved;
+    private final Consumer<List<EcsEntity>> onEntitiesRemoved;
+    private final Consumer<EcsEntity> onComponentChanged;
+    private EcsEntity[] entities;
+    private int size;
+    private long[] dirty;
+    private long[] dirtyHandles;
+    private int dirtyCount;
+    private boolean closed;
+
+    EcsComponentIndex(final EcsEngine engine, final EcsMapping<T> mapping, final EcsFamily family) {
+        this.engine = engine;
+        this.mapping = mapping;
+        this.family = family;
+        onEntityAdded = this::markDirty;
+        onEntityRemoved = this::entityRemoved;
+        onEntitiesRemoved = this::entitiesRemoved;
+        onComponentChanged = this::markDirty;
+        entities = new EcsEntity[0];
+        size = 0;
+        dirty = new long[0];
+        dirtyHandles = new long[0];
+        dirtyCount = 0;
+        closed = false;
+    }
+
+    public final EcsEngine getEngine() {
+        return engine;
+    }
+
+    public final EcsMapping<T> getMapping() {
+        return mapping;
+    }
+
+    public final int size() {
+        refreshIfIdle();
+        return size;
+    }
+
+    public final void refresh() {
+        synchronized (this) {
+            checkOpen();
+            for (int index = 0; index < dirtyCount; index++) {
+                final long handle = dirtyHandles[index];
+                final int id = EcsHandle.index(handle);
+                if (dirty[id] == handle) {
+                    dirty[id] = EcsHandle.NONE;
+                }
+                if (engine.isAlive(handle)) {
+                    final EcsEntity entity = engine.getEntity(handle);
+                    if (family.test(entity)) {
+                        updateEntity(entity);
+                    }
+                }
+            }
+            dirtyCount = 0;
+            refreshed();
+        }
+    }
+
+    @Override
+    public final void close() {
+        engine.removeIndex(this);
+    }
+
+    final EcsFamily getFamily() {
+        return family;
+    }
+
+    final EcsEntity getEntity(final int id) {
+        return entities[id];
+    }
+
+    final void open() {
+        family.getOnEntityAdded().addConsumer(onEntityAdded);
+        family.getOnEntityRemoved().addConsumer(onEntityRemoved);
+        family.getOnEntitiesRemoved().addConsumer(onEntitiesRemoved);
+        engine.getChangeTracker(mapping.getId(), true).addListener(onComponentChanged);
+        family.forEach(this::markDirty);
+        refresh();
+    }
+
+    final synchronized boolean shutdown() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        family.getOnEntityAdded().removeConsumer(onEntityAdded);
+        family.getOnEntityRemoved().removeConsumer(onEntityRemoved);
+        family.getOnEntitiesRemoved().removeConsumer(onEntitiesRemoved);
+        engine.getChangeTracker(mapping.getId(), true).removeListener(onComponentChanged);
+        entities = new EcsEntity[0];
+        size = 0;
+        dirty = new long[0];
+        dirtyHandles = new long[0];
+        dirtyCount = 0;
+        cleared();
+        return true;
+    }
+
+    final void refreshIfIdle() {
+        if (!engine.isUpdating()) {
+            refresh();
+        }
+    }
+
+    abstract void added(int id, T component);
+
+    abstract void changed(int id, T component);
+
+    abstract void removed(int id);
+
+    void refreshed() {
+    }
+
+    abstract void cleared();
+
+    private void updateEntity(final EcsEntity entity) {
+        final T component = entity.getComponent(mapping);
+        final int id = entity.getId();
+        if (id < entities.length && entities[id] != null) {
+            if (entities[id] == entity) {
+                changed(id, component);
+                return;
+            }
+            removeEntity(id);
+        }
+        if (id >= entities.length) {
+            entities = Arrays.copyOf(entities, Math.max(id + 1, (entities.length + 1) * 3 / 2));
+        }
+        entities[id] = entity;
+        size++;
+        added(id, component);
+    }
+
+    private synchronized void markDirty(final EcsEntity entity) {
+        if (closed) {
+            return;
+        }
+        final int id = entity.getId();
+        final long handle = entity.getHandle();
+        if (id >= dirty.length) {
+            final int length = dirty.length;
+            dirty = Arrays.copyOf(dirty, (id + 1) * 3 / 2);
+            Arrays.fill(dirty, length, dirty.length, EcsHandle.NONE);
+        }
+        if (dirty[id] == handle) {
+            return;
+        }
+        dirty[id] = handle;
+        if (dirtyCount >= dirtyHandles.length) {
+            dirtyHandles = Arrays.copyOf(dirtyHandles, (dirtyCount + 1) * 3 / 2);
+        }
+        dirtyHandles[dirtyCount++] = handle;
+    }
+
+    private synchronized void entityRemoved(final EcsEntity entity) {
+        final int id = entity.getId();
+        if (id < entities.length && entities[id] == entity) {
+            removeEntity(id);
+        }
+    }
+
+    private synchronized void entitiesRemoved(final List<EcsEntity> removed) {
+        for (final EcsEntity entity : removed) {
+            entityRemoved(entity);
+        }
+    }
+
+    private void removeEntity(final int id) {
+        removed(id);
+        entities[id] = null;
+        size--;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("index closed");
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package org.dru.dusap.ecs;
+
+@FunctionalInterface
+public interface EcsConsumer2<A, B> {
+    void accept(EcsEntity entity, A first, B second);
+}
@@ -0,0 +1,6 @@
+package org.dru.dusap.ecs;
+
+@FunctionalInterface
+public interface EcsConsumer3<A, B, C> {
+    void accept(EcsEntity entity, A first, B second, C third);
+}
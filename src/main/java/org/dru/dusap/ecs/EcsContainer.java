@@ -3,16 +3,23 @@ package org.dru.dusap.ecs;
 import org.dru.dusap.messaging.DefaultMessagePipe;
 import org.dru.dusap.messaging.MessagePipe;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Spliterator;
 import java.util.function.Consumer;
 
 public abstract class EcsContainer {
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
     private final int id;
     private final MessagePipe<EcsEntity> onEntityAdded;
     private final MessagePipe<EcsEntity> onEntityRemoved;
+    private final MessagePipe<List<EcsEntity>> onEntitiesRemoved;
     private EcsEntity[] entities;
     private int entityCount;
 
@@ -20,17 +27,30 @@ public abstract class EcsContainer {
         this.id = id;
         onEntityAdded = new DefaultMessagePipe<>();
         onEntityRemoved = new DefaultMessagePipe<>();
+        onEntitiesRemoved = new DefaultMessagePipe<>();
         entities = new EcsEntity[0];
         entityCount = 0;
     }
 
-    public void forEach(final Consumer<EcsEntity> action) {
+    public void forEach(final Consumer<? super EcsEntity> action) {
         Objects.requireNonNull(action, "action");
         for (int index = 0; index < entityCount; index++) {
             action.accept(entities[index]);
         }
     }
 
+    public Spliterator<EcsEntity> spliterator() {
+        return spliterator(DEFAULT_BATCH_SIZE);
+    }
+
+    public Spliterator<EcsEntity> spliterator(final int batchSize) {
+        return new EcsSpliterator(new EcsEntity[][]{entities}, new int[]{0, entityCount}, batchSize);
+    }
+
+    public int getEntityCount() {
+        return entityCount;
+    }
+
     public final int getId() {
         return id;
     }
@@ -43,6 +63,14 @@ public abstract class EcsContainer {
         return onEntityRemoved;
     }
 
+    public final MessagePipe<List<EcsEntity>> getOnEntitiesRemoved() {
+        return onEntitiesRemoved;
+    }
+
+    EcsEntity[] getEntities() {
+        return entities;
+    }
+
     boolean hasEntity(final EcsEntity entity) {
         Objects.requireNonNull(entity, "entity");
         return entity.getIndex(getId()) != -1;
@@ -61,6 +89,65 @@ public abstract class EcsContainer {
         getOnEntityAdded().dispatchMessage(entity);
     }
 
+    void addEntities(final EcsEntity[] entities, final int count) {
+        if (entityCount + count > this.entities.length) {
+            this.entities = Arrays.copyOf(this.entities, Math.max(entityCount + count, (entityCount + 1) * 3 / 2));
+        }
+        for (int index = 0; index < count; index++) {
+            final EcsEntity entity = entities[index];
+            if (hasEntity(entity)) {
+                throw new IllegalArgumentException("entity already added: id=" + entity.getId()
+                        + ", containerId=" + getId());
+            }
+            entity.setIndex(getId(), entityCount);
+            this.entities[entityCount++] = entity;
+        }
+        for (int index = 0; index < count; index++) {
+            getOnEntityAdded().dispatchMessage(entities[index]);
+        }
+    }
+
+    void removeEntities(final EcsBitSet victims, final boolean batched) {
+        final List<EcsEntity> removed = new ArrayList<>();
+        int count = 0;
+        for (int index = 0; index < entityCount; index++) {
+            final EcsEntity entity = entities[index];
+            if (victims.get(entity.getId())) {
+                entity.clearIndex(getId());
+                removed.add(entity);
+            } else {
+                if (count != index) {
+                    entities[count] = entity;
+                    entity.setIndex(getId(), count);
+                }
+                count++;
+            }
+        }
+        Arrays.fill(entities, count, entityCount, null);
+        entityCount = count;
+        notifyRemoved(removed, batched);
+    }
+
+    void notifyRemoved(final List<EcsEntity> removed, final boolean batched) {
+        if (batched) {
+            if (!removed.isEmpty()) {
+                getOnEntitiesRemoved().dispatchMessage(Collections.unmodifiableList(removed));
+            }
+        } else {
+            for (final EcsEntity entity : removed) {
+                getOnEntityRemoved().dispatchMessage(entity);
+            }
+        }
+    }
+
+    void evictEntities() {
+        for (int index = 0; index < entityCount; index++) {
+            entities[index].clearIndex(getId());
+        }
+        entities = new EcsEntity[0];
+        entityCount = 0;
+    }
+
     void removeEntity(final EcsEntity entity) {
         Objects.requireNonNull(entity, "entity");
         final int index = entity.getIndex(getId());
@@ -69,8 +156,12 @@ public abstract class EcsContainer {
                     + ", containerId=" + getId());
         }
         entity.clearIndex(getId());
-        entities[index] = entities[--entityCount];
-        entities[index].setIndex(getId(), index);
+        final int last = --entityCount;
+        if (index != last) {
+            entities[index] = entities[last];
+            entities[index].setIndex(getId(), index);
+        }
+        entities[last] = null;
         getOnEntityRemoved().dispatchMessage(entity);
     }
 }
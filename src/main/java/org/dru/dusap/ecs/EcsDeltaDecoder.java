@@ -0,0 +1,198 @@
+package org.dru.dusap.ecs;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+final class EcsDeltaDecoder {
+    private final EcsEngine engine;
+    private final EcsMapping<?>[] mappings;
+    private final EcsBitSet bitSet;
+    private final EcsBitSet changed;
+    private final int wordCount;
+    private final long[] words;
+    private EcsEntity[] created;
+    private int createdCount;
+
+    EcsDeltaDecoder(final EcsEngine engine) {
+        Objects.requireNonNull(engine, "engine");
+        this.engine = engine;
+        bitSet = EcsBitSet.create(engine.getMaxComponentCount());
+        changed = EcsBitSet.create(engine.getMaxComponentCount());
+        wordCount = bitSet.getWordCount();
+        mappings = new EcsMapping<?>[wordCount * Long.SIZE];
+        words = new long[wordCount * 2];
+        created = new EcsEntity[0];
+        createdCount = 0;
+    }
+
+    void decode(final ByteBuffer buffer) throws StreamCorruptedException {
+        if (engine.isUpdating()) {
+            throw new IllegalStateException("updating");
+        }
+        engine.flush();
+        if (buffer.remaining() < Integer.BYTES * 3 + 1 || buffer.getInt() != EcsDeltaEncoder.MAGIC) {
+            throw new StreamCorruptedException("not a delta");
+        }
+        final int version = buffer.getInt();
+        if (version != EcsDeltaEncoder.VERSION) {
+            throw new StreamCorruptedException("unsupported delta version: " + version);
+        }
+        final byte kind = buffer.get();
+        if (buffer.getInt() != wordCount) {
+            throw new IllegalStateException("max component count mismatch: " + engine.getMaxComponentCount());
+        }
+        readMappings(buffer);
+        int[] freeSlots = null;
+        if (kind == EcsDeltaEncoder.FULL) {
+            if (engine.getEntityCount() != 0) {
+                throw new IllegalStateException("engine not empty");
+            }
+            final int[] generations = new int[buffer.getInt()];
+            for (int index = 0; index < generations.length; index++) {
+                generations[index] = buffer.getInt();
+            }
+            engine.restoreGenerations(generations);
+            freeSlots = new int[buffer.getInt()];
+            for (int index = 0; index < freeSlots.length; index++) {
+                freeSlots[index] = buffer.getInt();
+            }
+        } else {
+            for (int count = buffer.getInt(); count > 0; count--) {
+                final long handle = buffer.getLong();
+                if (engine.isAlive(handle)) {
+                    engine.removeEntityNow(engine.getEntity(handle));
+                }
+            }
+        }
+        try {
+            long handle;
+            while ((handle = buffer.getLong()) != EcsHandle.NONE) {
+                for (int word = 0; word < words.length; word++) {
+                    words[word] = buffer.getLong();
+                }
+                translate();
+                if (engine.isAlive(handle)) {
+                    updateEntity(engine.getEntity(handle), buffer);
+                } else {
+                    createEntity(handle, buffer);
+                }
+            }
+        } finally {
+            engine.addEntitiesNow(created, createdCount);
+            Arrays.fill(created, 0, createdCount, null);
+            createdCount = 0;
+        }
+        if (freeSlots != null) {
+            engine.restoreFreeSlots(freeSlots);
+        }
+    }
+
+    private void readMappings(final ByteBuffer buffer) throws StreamCorruptedException {
+        for (int count = buffer.getInt(); count > 0; count--) {
+            final int id = buffer.getInt();
+            final int valueSize = buffer.getInt();
+            final byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            if (id < 0 || id >= mappings.length) {
+                throw new StreamCorruptedException("component id out of range: " + id);
+            }
+            final EcsMapping<?> mapping = engine.getMapping(new String(name, StandardCharsets.UTF_8));
+            final EcsValueMapping valueMapping = mapping.getValueMapping();
+            if (valueMapping == null && valueSize != -1) {
+                throw new IllegalStateException("value mapping not registered: " + mapping.getType().getName());
+            }
+            if ((valueMapping != null ? valueMapping.getValueSize() : -1) != valueSize) {
+                throw new IllegalStateException("mapping mismatch: " + mapping.getType().getName());
+            }
+            if (valueMapping == null && mapping.getCodec() == null) {
+                throw new IllegalStateException("codec not set: " + mapping.getType().getName());
+            }
+            mappings[id] = mapping;
+        }
+    }
+
+    private void translate() throws StreamCorruptedException {
+        bitSet.clear();
+        for (int word = 0; word < wordCount; word++) {
+            long value = words[word];
+            while (value != 0L) {
+                final int id = word * Long.SIZE + Long.numberOfTrailingZeros(value);
+                final EcsMapping<?> mapping = mappings[id];
+                if (mapping == null) {
+                    throw new StreamCorruptedException("component not mapped: " + id);
+                }
+                bitSet.set(mapping.getId());
+                value &= value - 1L;
+            }
+        }
+    }
+
+    private void createEntity(final long handle, final ByteBuffer buffer) throws StreamCorruptedException {
+        for (int word = 0; word < wordCount; word++) {
+            if (words[word] != words[wordCount + word]) {
+                throw new StreamCorruptedException("missing component data: " + EcsHandle.toString(handle));
+            }
+        }
+        final EcsEntity entity = engine.restoreEntity(handle);
+        readComponents(entity, buffer);
+        if (createdCount >= created.length) {
+            created = Arrays.copyOf(created, (createdCount + 1) * 3 / 2);
+        }
+        created[createdCount++] = entity;
+    }
+
+    private void updateEntity(final EcsEntity entity, final ByteBuffer buffer) throws StreamCorruptedException {
+        final EcsArchetype source = entity.getArchetype();
+        final EcsBitSet current = entity.getBitSet();
+        changed.clear();
+        for (int id = current.nextSetBit(0); id >= 0; id = current.nextSetBit(id + 1)) {
+            if (!bitSet.get(id)) {
+                changed.set(id);
+            }
+        }
+        for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+            entity.removeComponent(id);
+        }
+        for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+            if (!current.get(id)) {
+                changed.set(id);
+            }
+        }
+        readComponents(entity, buffer);
+        if (!entity.getBitSet().equals(bitSet)) {
+            throw new StreamCorruptedException("missing component data: " + EcsHandle.toString(entity.getHandle()));
+        }
+        if (changed.nextSetBit(0) >= 0) {
+            engine.componentsChanged(entity, source, changed);
+        }
+    }
+
+    private void readComponents(final EcsEntity entity, final ByteBuffer buffer) {
+        for (int word = 0; word < wordCount; word++) {
+            long value = words[wordCount + word];
+            while (value != 0L) {
+                readComponent(entity, mappings[word * Long.SIZE + Long.numberOfTrailingZeros(value)], buffer);
+                value &= value - 1L;
+            }
+        }
+    }
+
+    private void readComponent(final EcsEntity entity, final EcsMapping<?> mapping, final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        final ByteBuffer source = buffer.slice();
+        source.limit(length);
+        buffer.position(buffer.position() + length);
+        final EcsValueMapping valueMapping = mapping.getValueMapping();
+        if (valueMapping != null) {
+            valueMapping.decode(entity, source);
+            return;
+        }
+        if (mapping.getCodec() == null) {
+            throw new IllegalStateException("codec not set: " + mapping.getType().getName());
+        }
+        entity.putComponent(mapping.getId(), mapping.getCodec().decode(source));
+    }
+}
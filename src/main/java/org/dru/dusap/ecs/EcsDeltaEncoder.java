@@ -0,0 +1,350 @@
+package org.dru.dusap.ecs;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+final class EcsDeltaEncoder {
+    static final int MAGIC = 0x45435353;
+    static final int VERSION = 1;
+    static final byte FULL = 0;
+    static final byte DELTA = 1;
+
+    private final EcsEngine engine;
+    private final EcsFamily family;
+    private final boolean strict;
+    private final EcsMapping<?>[] mappings;
+    private final EcsBitSet replicated;
+    private final EcsBitSet sentMappings;
+    private final EcsBitSet bitSet;
+    private final EcsBitSet dirty;
+    private final EcsBitSet subscribed;
+    private final List<EcsMapping<?>> newMappings;
+    private final EcsFilterBuffer touched;
+    private final IntSupplier reader;
+    private final Consumer<EcsEntity> onEntityAdded;
+    private final int wordCount;
+    private ByteBuffer buffer;
+    private WritableByteChannel channel;
+    private long[] handles;
+    private EcsBitSet[] bitSets;
+    private int tick;
+
+    EcsDeltaEncoder(final EcsEngine engine, final EcsFamily family, final boolean strict, final int capacity) {
+        Objects.requireNonNull(engine, "engine");
+        this.engine = engine;
+        this.family = family;
+        this.strict = strict;
+        mappings = new EcsMapping<?>[engine.getMaxComponentCount()];
+        replicated = EcsBitSet.create(engine.getMaxComponentCount());
+        sentMappings = EcsBitSet.create(engine.getMaxComponentCount());
+        bitSet = EcsBitSet.create(engine.getMaxComponentCount());
+        dirty = EcsBitSet.create(engine.getMaxComponentCount());
+        subscribed = EcsBitSet.create(engine.getMaxComponentCount());
+        newMappings = new ArrayList<>();
+        touched = new EcsFilterBuffer();
+        reader = () -> tick;
+        onEntityAdded = entity -> touched.accept(entity.getHandle());
+        wordCount = bitSet.getWordCount();
+        buffer = ByteBuffer.allocateDirect(capacity);
+        handles = new long[0];
+        bitSets = new EcsBitSet[0];
+        tick = 0;
+        if (family != null) {
+            family.getOnEntityAdded().addConsumer(onEntityAdded);
+        }
+    }
+
+    EcsFamily getFamily() {
+        return family;
+    }
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    void reset() {
+        Arrays.fill(handles, EcsHandle.NONE);
+        sentMappings.clear();
+        tick = 0;
+    }
+
+    void close() {
+        if (family != null) {
+            family.getOnEntityAdded().removeConsumer(onEntityAdded);
+        }
+        for (int id = subscribed.nextSetBit(0); id >= 0; id = subscribed.nextSetBit(id + 1)) {
+            engine.getChangeTracker(id).removeReader(reader);
+        }
+        subscribed.clear();
+        touched.clear();
+    }
+
+    void forgetMappings() {
+        sentMappings.clear();
+    }
+
+    void encode(final byte kind, final WritableByteChannel channel) throws IOException {
+        if (engine.isUpdating()) {
+            throw new IllegalStateException("updating");
+        }
+        engine.flush();
+        newMappings.clear();
+        engine.forEachMapping(mapping -> {
+            if (!strict && mapping.getValueMapping() == null && mapping.getCodec() == null) {
+                return;
+            }
+            replicated.set(mapping.getId());
+            mappings[mapping.getId()] = mapping;
+            final EcsChangeTracker tracker = engine.getChangeTracker(mapping.getId(), true);
+            if (family != null && subscribed.setIfCleared(mapping.getId())) {
+                tracker.addReader(reader);
+            }
+            if (sentMappings.setIfCleared(mapping.getId())) {
+                newMappings.add(mapping);
+            }
+        });
+        final int since = tick;
+        final int now = engine.advanceChangeTick();
+        this.channel = channel;
+        try {
+            buffer.clear();
+            ensure(Integer.BYTES * 3 + 1);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.put(kind);
+            buffer.putInt(wordCount);
+            writeMappings();
+            if (kind == FULL) {
+                writeSlots();
+            } else {
+                writeDestroyed();
+            }
+            if (kind == FULL || family == null || since == 0 || !newMappings.isEmpty()) {
+                touched.clear();
+                (family != null ? family : engine).forEach(touched::addEntity);
+            } else {
+                collectTouched(since);
+            }
+            final EcsEntity[] entities = touched.getEntities();
+            for (int index = 0, count = touched.getEntityCount(); index < count; index++) {
+                writeEntity(entities[index], since);
+            }
+            touched.clear();
+            ensure(Long.BYTES);
+            buffer.putLong(EcsHandle.NONE);
+            if (channel != null) {
+                flush();
+            } else {
+                buffer.flip();
+            }
+        } finally {
+            this.channel = null;
+        }
+        tick = now;
+    }
+
+    private void collectTouched(final int since) {
+        for (int id = subscribed.nextSetBit(0); id >= 0; id = subscribed.nextSetBit(id + 1)) {
+            final EcsChangeTracker tracker = engine.getChangeTracker(id);
+            tracker.collect(since, EcsChangeTracker.CHANGED, touched);
+            tracker.collect(since, EcsChangeTracker.REMOVED, touched);
+        }
+        final int handleCount = touched.sortHandles();
+        for (int index = 0; index < handleCount; index++) {
+            final long handle = touched.getHandle(index);
+            if (engine.isAlive(handle)) {
+                final EcsEntity entity = engine.getEntity(handle);
+                if (family.hasEntity(entity)) {
+                    touched.addEntity(entity);
+                }
+            }
+        }
+    }
+
+    private void writeMappings() throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(newMappings.size());
+        for (final EcsMapping<?> mapping : newMappings) {
+            final EcsValueMapping valueMapping = mapping.getValueMapping();
+            final byte[] name = mapping.getType().getName().getBytes(StandardCharsets.UTF_8);
+            ensure(Integer.BYTES * 3 + name.length);
+            buffer.putInt(mapping.getId());
+            buffer.putInt(valueMapping != null ? valueMapping.getValueSize() : -1);
+            buffer.putInt(name.length);
+            buffer.put(name);
+        }
+    }
+
+    private void writeSlots() throws IOException {
+        final int[] generations = engine.getGenerations();
+        ensure(Integer.BYTES);
+        buffer.putInt(generations.length);
+        for (final int generation : generations) {
+            ensure(Integer.BYTES);
+            buffer.putInt(generation);
+        }
+        final int[] freeSlots = engine.getFreeSlots();
+        ensure(Integer.BYTES);
+        buffer.putInt(freeSlots.length);
+        for (final int freeSlot : freeSlots) {
+            ensure(Integer.BYTES);
+            buffer.putInt(freeSlot);
+        }
+        if (handles.length < generations.length) {
+            handles = new long[generations.length];
+            bitSets = Arrays.copyOf(bitSets, generations.length);
+        }
+        Arrays.fill(handles, EcsHandle.NONE);
+    }
+
+    private void writeDestroyed() throws IOException {
+        int count = 0;
+        for (int index = 0; index < handles.length; index++) {
+            if (isGone(handles[index])) {
+                count++;
+            }
+        }
+        ensure(Integer.BYTES);
+        buffer.putInt(count);
+        for (int index = 0; index < handles.length; index++) {
+            if (isGone(handles[index])) {
+                ensure(Long.BYTES);
+                buffer.putLong(handles[index]);
+                handles[index] = EcsHandle.NONE;
+            }
+        }
+    }
+
+    private boolean isGone(final long handle) {
+        if (handle == EcsHandle.NONE) {
+            return false;
+        }
+        if (!engine.isAlive(handle)) {
+            return true;
+        }
+        return family != null && !family.getAspect().test(engine.getEntity(handle).getBitSet());
+    }
+
+    private void writeEntity(final EcsEntity entity, final int since) throws IOException {
+        final int index = entity.getId();
+        final long handle = entity.getHandle();
+        if (index >= handles.length) {
+            final int length = handles.length;
+            final int newLength = Math.max(index + 1, (length + 1) * 3 / 2);
+            handles = Arrays.copyOf(handles, newLength);
+            Arrays.fill(handles, length, newLength, EcsHandle.NONE);
+            bitSets = Arrays.copyOf(bitSets, newLength);
+        }
+        final EcsBitSet entityBitSet = entity.getBitSet();
+        bitSet.clear();
+        for (int id = entityBitSet.nextSetBit(0); id >= 0; id = entityBitSet.nextSetBit(id + 1)) {
+            if (replicated.get(id)) {
+                bitSet.set(id);
+            }
+        }
+        dirty.clear();
+        if (handles[index] != handle) {
+            for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+                dirty.set(id);
+            }
+        } else {
+            final EcsBitSet previous = bitSets[index];
+            boolean modified = !bitSet.equals(previous);
+            for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+                if (!previous.get(id) || engine.getChangeTracker(id).getChangedTick(index) - since > 0) {
+                    dirty.set(id);
+                    modified = true;
+                }
+            }
+            if (!modified) {
+                return;
+            }
+        }
+        handles[index] = handle;
+        EcsBitSet sent = bitSets[index];
+        if (sent == null) {
+            sent = EcsBitSet.create(engine.getMaxComponentCount());
+            bitSets[index] = sent;
+        }
+        for (int word = 0; word < wordCount; word++) {
+            sent.setWord(word, bitSet.getWord(word));
+        }
+        ensure(Long.BYTES + wordCount * Long.BYTES * 2);
+        buffer.putLong(handle);
+        for (int word = 0; word < wordCount; word++) {
+            buffer.putLong(bitSet.getWord(word));
+        }
+        for (int word = 0; word < wordCount; word++) {
+            buffer.putLong(dirty.getWord(word));
+        }
+        for (int id = dirty.nextSetBit(0); id >= 0; id = dirty.nextSetBit(id + 1)) {
+            writeComponent(mappings[id], entity);
+        }
+    }
+
+    private void writeComponent(final EcsMapping<?> mapping, final EcsEntity entity) throws IOException {
+        final EcsValueMapping valueMapping = mapping.getValueMapping();
+        if (valueMapping == null && mapping.getCodec() == null) {
+            throw new IllegalStateException("codec not set: " + mapping.getType().getName());
+        }
+        while (true) {
+            final int start = buffer.position();
+            try {
+                buffer.putInt(0);
+                if (valueMapping != null) {
+                    valueMapping.encode(entity, buffer);
+                } else {
+                    encode(mapping, entity.getComponent(mapping.getId()));
+                }
+                buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+                return;
+            } catch (final BufferOverflowException exc) {
+                buffer.position(start);
+                if (channel != null && start > 0) {
+                    flush();
+                } else {
+                    grow(buffer.capacity() * 2);
+                }
+            }
+        }
+    }
+
+    private <T> void encode(final EcsMapping<T> mapping, final Object component) {
+        mapping.getCodec().encode(mapping.getType().cast(component), buffer);
+    }
+
+    private void ensure(final int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            if (channel != null) {
+                flush();
+            }
+            if (buffer.remaining() < bytes) {
+                grow(Math.max(buffer.position() + bytes, buffer.capacity() * 2));
+            }
+        }
+    }
+
+    private void grow(final int capacity) {
+        final ByteBuffer result = ByteBuffer.allocateDirect(capacity);
+        buffer.flip();
+        result.put(buffer);
+        buffer = result;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,78 @@
+package org.dru.dusap.ecs;
+
+final class EcsDoubleWordBitSet extends EcsBitSet {
+    private long word0;
+    private long word1;
+
+    EcsDoubleWordBitSet() {
+        word0 = 0L;
+        word1 = 0L;
+    }
+
+    @Override
+    public boolean get(final int pos) {
+        switch (index(pos)) {
+            case 0:
+                return (word0 & bitval(pos)) != 0L;
+            case 1:
+                return (word1 & bitval(pos)) != 0L;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void clear() {
+        word0 = 0L;
+        word1 = 0L;
+    }
+
+    @Override
+    public boolean intersects(final EcsBitSet other) {
+        if (other instanceof EcsDoubleWordBitSet) {
+            final EcsDoubleWordBitSet bitSet = (EcsDoubleWordBitSet) other;
+            return ((word0 & bitSet.word0) | (word1 & bitSet.word1)) != 0L;
+        }
+        return super.intersects(other);
+    }
+
+    @Override
+    public boolean containsAll(final EcsBitSet other) {
+        if (other instanceof EcsDoubleWordBitSet) {
+            final EcsDoubleWordBitSet bitSet = (EcsDoubleWordBitSet) other;
+            return (word0 & bitSet.word0) == bitSet.word0 && (word1 & bitSet.word1) == bitSet.word1;
+        }
+        return super.containsAll(other);
+    }
+
+    @Override
+    int getWordCount() {
+        return 2;
+    }
+
+    @Override
+    long getWord(final int index) {
+        switch (index) {
+            case 0:
+                return word0;
+            case 1:
+                return word1;
+            default:
+                throw new IndexOutOfBoundsException("word index out of range: " + index);
+        }
+    }
+
+    @Override
+    void setWord(final int index, final long value) {
+        switch (index) {
+            case 0:
+                word0 = value;
+                break;
+            case 1:
+                word1 = value;
+                break;
+            default:
+                throw new IndexOutOfBoundsException("word index out of range: " + index);
+        }
+    }
+}
@@ -1,55 +1,162 @@
 package org.dru.dusap.ecs;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.StreamSupport;
 
 public final class EcsEngine extends EcsContainer {
+    public static final int DEFAULT_FAMILY_CACHE_SIZE = 16;
+
     private final int maxComponentCount;
-    private final AtomicInteger entityIdCounter;
+    private final EcsStorage storage;
+    private final Object slotLock;
+    private EcsEntity[] slots;
+    private int[] generations;
+    private int slotCount;
+    private int[] freeSlots;
+    private int freeSlotCount;
+    private volatile boolean entityPooling;
+    private EcsEntity[] entityPool;
+    private int entityPoolCount;
     private final Map<Class<?>, EcsMapping<?>> mappingByClass;
     private final AtomicInteger mappingIdCounter;
+    private final Map<Class<?>, EcsEventChannel<?>> eventChannelByClass;
+    private final List<EcsComponentIndex<?>> indexes;
     private final List<EcsSystem> systems;
     private final Map<Class<? extends EcsSystem>, EcsSystem> systemByClassMap;
     private final Map<EcsAspect, EcsAspect> distinctAspectMap;
     private final Map<EcsAspect, EcsFamily> familyByAspectMap;
+    private final Queue<EcsFamily> leakedFamilies;
     private final AtomicInteger familyIdCounter;
+    private final Object familyLock;
+    private final Set<EcsFamily> idleFamilies;
+    private int[] freeFamilyIds;
+    private int freeFamilyIdCount;
+    private int familyCacheSize;
+    private volatile int familyVersion;
     private final AtomicBoolean updating;
-    private final List<Runnable> pending;
+    private volatile boolean deferring;
+    private volatile Executor executor;
+    private volatile EcsSystem[][] stages;
+    private volatile int batchSize;
+    private final EcsMetrics metrics;
+    private volatile EcsClock clock;
+    private volatile long time;
+    private EcsFixedTimestep fixedTimestep;
+    private final PriorityQueue<EcsIntervalSystem> intervalQueue;
+    private final List<EcsIntervalSystem> dueSystems;
+    private int systemOrder;
+    private final List<EcsCommandBuffer> commandBuffers;
+    private final List<EcsCommandBuffer> pooledCommandBuffers;
+    private final Deque<EcsCommandBuffer> freeCommandBuffers;
+    private final ThreadLocal<EcsCommandBuffer> threadCommandBuffer;
+    private volatile int commandEpoch;
+    private final EcsCommandBuffer syncCommandBuffer;
+    private final EcsFamily[][] familiesByComponent;
+    private final EcsChangeTracker[] changeTrackers;
+    private final AtomicInteger changeTick;
+    private EcsFamily[] familiesById;
+    private EcsFamily[] unconditionalFamilies;
+    private int[] familyStamps;
+    private int familyStamp;
+    private final Map<EcsBitSet, EcsArchetype> archetypeByBitSet;
+    private final List<EcsArchetype> archetypes;
 
     public EcsEngine(final int maxComponentCount) {
+        this(maxComponentCount, EcsStorage.SPARSE);
+    }
+
+    public EcsEngine(final int maxComponentCount, final EcsStorage storage) {
         super(0);
+        Objects.requireNonNull(storage, "storage");
         this.maxComponentCount = maxComponentCount;
-        entityIdCounter = new AtomicInteger();
+        this.storage = storage;
+        slotLock = new Object();
+        slots = new EcsEntity[0];
+        generations = new int[0];
+        slotCount = 0;
+        freeSlots = new int[0];
+        freeSlotCount = 0;
+        entityPooling = false;
+        entityPool = new EcsEntity[0];
+        entityPoolCount = 0;
         mappingByClass = new ConcurrentHashMap<>();
         mappingIdCounter = new AtomicInteger();
+        eventChannelByClass = new ConcurrentHashMap<>();
+        indexes = new CopyOnWriteArrayList<>();
         systems = new CopyOnWriteArrayList<>();
         systemByClassMap = new ConcurrentHashMap<>();
         distinctAspectMap = new ConcurrentHashMap<>();
         familyByAspectMap = new ConcurrentHashMap<>();
+        leakedFamilies = new ConcurrentLinkedQueue<>();
         familyIdCounter = new AtomicInteger(1);
+        familyLock = new Object();
+        idleFamilies = new LinkedHashSet<>();
+        freeFamilyIds = new int[0];
+        freeFamilyIdCount = 0;
+        familyCacheSize = DEFAULT_FAMILY_CACHE_SIZE;
+        familyVersion = 0;
         updating = new AtomicBoolean();
-        pending = new CopyOnWriteArrayList<>();
+        deferring = false;
+        executor = null;
+        stages = null;
+        batchSize = DEFAULT_BATCH_SIZE;
+        metrics = new EcsMetrics(this);
+        clock = EcsClock.SYSTEM;
+        time = 0L;
+        fixedTimestep = null;
+        intervalQueue = new PriorityQueue<>(Comparator.comparingLong(EcsIntervalSystem::getWhen)
+                .thenComparingInt(EcsSystem::getOrder));
+        dueSystems = new ArrayList<>();
+        systemOrder = 0;
+        commandBuffers = new CopyOnWriteArrayList<>();
+        pooledCommandBuffers = new ArrayList<>();
+        freeCommandBuffers = new ArrayDeque<>();
+        threadCommandBuffer = new ThreadLocal<>();
+        commandEpoch = 0;
+        syncCommandBuffer = new EcsCommandBuffer(this);
+        familiesByComponent = new EcsFamily[maxComponentCount][];
+        changeTrackers = new EcsChangeTracker[maxComponentCount];
+        changeTick = new AtomicInteger(1);
+        Arrays.fill(familiesByComponent, new EcsFamily[0]);
+        familiesById = new EcsFamily[1];
+        unconditionalFamilies = new EcsFamily[0];
+        familyStamps = new int[1];
+        familyStamp = 0;
+        archetypeByBitSet = new HashMap<>();
+        archetypes = new ArrayList<>();
     }
 
     @Override
     void addEntity(final EcsEntity entity) {
-        if (updating.get()) {
-            pending.add(() -> super.addEntity(entity));
+        if (updating.get() || deferring) {
+            getCommandBuffer().add(entity);
         } else {
-            super.addEntity(entity);
+            addEntityNow(entity);
         }
     }
 
     @Override
     void removeEntity(final EcsEntity entity) {
-        if (updating.get()) {
-            pending.add(() -> super.removeEntity(entity));
+        if (updating.get() || deferring) {
+            getCommandBuffer().destroy(entity.getHandle());
         } else {
-            super.removeEntity(entity);
+            removeEntityNow(entity);
         }
     }
 
@@ -57,18 +164,460 @@ public final class EcsEngine extends EcsContainer {
         return maxComponentCount;
     }
 
-    public void createEntity(final Consumer<EcsEntity> builder) {
+    public EcsStorage getStorage() {
+        return storage;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(final Executor executor) {
+        if (updating.get()) {
+            throw new IllegalStateException("updating");
+        }
+        this.executor = executor;
+    }
+
+    public EcsMetrics getMetrics() {
+        return metrics;
+    }
+
+    public EcsClock getClock() {
+        return clock;
+    }
+
+    public void setClock(final EcsClock clock) {
+        Objects.requireNonNull(clock, "clock");
+        if (updating.get()) {
+            throw new IllegalStateException("updating");
+        }
+        this.clock = clock;
+        synchronized (intervalQueue) {
+            if (fixedTimestep != null) {
+                fixedTimestep = new EcsFixedTimestep(fixedTimestep.getStep(), fixedTimestep.getMaxSteps(),
+                        fixedTimestep.getPolicy());
+            }
+        }
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setFixedTimestep(final long step, final TimeUnit unit, final int maxSteps,
+                                 final EcsStepPolicy policy) {
+        Objects.requireNonNull(unit, "unit");
+        Objects.requireNonNull(policy, "policy");
+        final EcsFixedTimestep fixedTimestep = new EcsFixedTimestep(unit.toNanos(step), maxSteps, policy);
+        synchronized (intervalQueue) {
+            this.fixedTimestep = fixedTimestep;
+        }
+    }
+
+    public void clearFixedTimestep() {
+        synchronized (intervalQueue) {
+            fixedTimestep = null;
+        }
+    }
+
+    public int advance() {
+        final EcsFixedTimestep fixedTimestep;
+        synchronized (intervalQueue) {
+            fixedTimestep = this.fixedTimestep;
+        }
+        if (fixedTimestep == null) {
+            throw new IllegalStateException("fixed timestep not set");
+        }
+        final int steps = fixedTimestep.steps(clock.nanoTime());
+        for (int step = 0; step < steps; step++) {
+            update(fixedTimestep.nextTime());
+        }
+        return steps;
+    }
+
+    public double getInterpolation() {
+        final EcsFixedTimestep fixedTimestep;
+        synchronized (intervalQueue) {
+            fixedTimestep = this.fixedTimestep;
+        }
+        return (fixedTimestep != null ? fixedTimestep.getInterpolation() : 0.0);
+    }
+
+    public int getChangeTick() {
+        return changeTick.get();
+    }
+
+    public void trackChanges(final Class<?> type) {
+        getChangeTracker(getMapping(type).getId(), true);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize has to be 1 or greater: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getFamilyCacheSize() {
+        synchronized (familyLock) {
+            return familyCacheSize;
+        }
+    }
+
+    public void setFamilyCacheSize(final int familyCacheSize) {
+        if (familyCacheSize < 0) {
+            throw new IllegalArgumentException("negative familyCacheSize: " + familyCacheSize);
+        }
+        synchronized (familyLock) {
+            this.familyCacheSize = familyCacheSize;
+            trimFamilies();
+        }
+    }
+
+    public EcsQuery query(final Consumer<EcsBuilder> query) {
+        Objects.requireNonNull(query, "query");
+        final EcsBuilder builder = new EcsBuilder(this);
+        query.accept(builder);
+        return query(builder.getAspect());
+    }
+
+    public EcsQuery query(final EcsAspect aspect) {
+        releaseLeakedFamilies();
+        return new EcsQuery(this, acquireFamily(aspect));
+    }
+
+    public boolean isEntityPooling() {
+        return entityPooling;
+    }
+
+    public void setEntityPooling(final boolean entityPooling) {
+        this.entityPooling = entityPooling;
+    }
+
+    public long createEntity(final Consumer<EcsEntity> builder) {
         Objects.requireNonNull(builder, "builder");
-        final EcsEntity entity = new EcsEntity(entityIdCounter.getAndIncrement(), this);
-        builder.accept(entity);
+        final EcsEntity entity = allocateEntity();
+        try {
+            builder.accept(entity);
+        } catch (final RuntimeException | Error exc) {
+            releaseEntity(entity);
+            throw exc;
+        }
         addEntity(entity);
+        return entity.getHandle();
+    }
+
+    public EcsPrefab createPrefab() {
+        return new EcsPrefab(this);
+    }
+
+    public long[] createEntities(final EcsPrefab prefab, final int count) {
+        return createEntities(prefab, count, null);
+    }
+
+    public long[] createEntities(final EcsPrefab prefab, final int count,
+                                 final ObjIntConsumer<EcsEntity> initializer) {
+        Objects.requireNonNull(prefab, "prefab");
+        if (prefab.getEngine() != this) {
+            throw new IllegalArgumentException("engine mismatch");
+        }
+        return spawnEntities(prefab, count, initializer);
+    }
+
+    public long[] createEntities(final int count, final ObjIntConsumer<EcsEntity> initializer) {
+        Objects.requireNonNull(initializer, "initializer");
+        return spawnEntities(null, count, initializer);
+    }
+
+    private long[] spawnEntities(final EcsPrefab prefab, final int count,
+                                 final ObjIntConsumer<EcsEntity> initializer) {
+        if (count < 0) {
+            throw new IllegalArgumentException("negative count: " + count);
+        }
+        final EcsEntity[] entities = allocateEntities(count);
+        final long[] handles = new long[count];
+        try {
+            for (int index = 0; index < count; index++) {
+                final EcsEntity entity = entities[index];
+                if (prefab != null) {
+                    prefab.initialize(entity);
+                }
+                if (initializer != null) {
+                    initializer.accept(entity, index);
+                }
+                handles[index] = entity.getHandle();
+            }
+        } catch (final RuntimeException | Error exc) {
+            for (final EcsEntity entity : entities) {
+                releaseEntity(entity);
+            }
+            throw exc;
+        }
+        if (updating.get() || deferring) {
+            final EcsCommandBuffer commandBuffer = getCommandBuffer();
+            for (final EcsEntity entity : entities) {
+                commandBuffer.add(entity);
+            }
+        } else if (prefab != null) {
+            addEntitiesNow(prefab, entities);
+        } else {
+            addEntitiesNow(entities, count);
+        }
+        return handles;
+    }
+
+    public int destroyAll(final Consumer<EcsBuilder> query) {
+        return destroyAll(query, false);
+    }
+
+    public int destroyAll(final Consumer<EcsBuilder> query, final boolean batched) {
+        Objects.requireNonNull(query, "query");
+        final EcsBuilder builder = new EcsBuilder(this);
+        query.accept(builder);
+        return destroyAll(builder.getAspect(), batched);
+    }
+
+    public int destroyAll(final EcsAspect aspect) {
+        return destroyAll(aspect, false);
+    }
+
+    public int destroyAll(final EcsAspect aspect, final boolean batched) {
+        Objects.requireNonNull(aspect, "aspect");
+        final EcsFamily family = familyByAspectMap.get(aspect);
+        if (family != null) {
+            return destroyAll(family, batched);
+        }
+        final List<EcsEntity> victims = new ArrayList<>();
+        forEach(entity -> {
+            if (aspect.test(entity)) {
+                victims.add(entity);
+            }
+        });
+        return destroyEntities(victims, batched);
+    }
+
+    public int destroyAll(final EcsFamily family) {
+        return destroyAll(family, false);
+    }
+
+    public int destroyAll(final EcsFamily family, final boolean batched) {
+        Objects.requireNonNull(family, "family");
+        if (familyByAspectMap.get(family.getAspect()) != family) {
+            throw new IllegalArgumentException("family not registered: " + family.getId());
+        }
+        final List<EcsEntity> victims = new ArrayList<>(family.getEntityCount());
+        family.forEach(victims::add);
+        return destroyEntities(victims, batched);
+    }
+
+    public int clear() {
+        return clear(false);
+    }
+
+    public int clear(final boolean batched) {
+        final List<EcsEntity> victims = new ArrayList<>(getEntityCount());
+        forEach(victims::add);
+        return destroyEntities(victims, batched);
+    }
+
+    public boolean isAlive(final long handle) {
+        final int index = EcsHandle.index(handle);
+        final int[] generations = this.generations;
+        return index >= 0 && index < generations.length && generations[index] == EcsHandle.generation(handle)
+                && slots[index] != null;
+    }
+
+    public EcsEntity getEntity(final long handle) {
+        if (!isAlive(handle)) {
+            throw new IllegalArgumentException("stale handle: " + EcsHandle.toString(handle));
+        }
+        return slots[EcsHandle.index(handle)];
+    }
+
+    public void destroyEntity(final long handle) {
+        getEntity(handle).destroyEntity();
+    }
+
+    public EcsCommandBuffer createCommandBuffer() {
+        final EcsCommandBuffer commandBuffer = new EcsCommandBuffer(this);
+        commandBuffers.add(commandBuffer);
+        return commandBuffer;
+    }
+
+    public EcsCommandBuffer getCommandBuffer() {
+        final EcsCommandBuffer result = threadCommandBuffer.get();
+        if (result != null && result.getEpoch() == commandEpoch) {
+            return result;
+        }
+        final EcsCommandBuffer commandBuffer = checkOutCommandBuffer();
+        threadCommandBuffer.set(commandBuffer);
+        return commandBuffer;
+    }
+
+    public void releaseCommandBuffer(final EcsCommandBuffer commandBuffer) {
+        Objects.requireNonNull(commandBuffer, "commandBuffer");
+        if (!commandBuffers.remove(commandBuffer)) {
+            throw new IllegalArgumentException("command buffer not registered");
+        }
+        commandBuffer.drainTo(getCommandBuffer());
+    }
+
+    public void flush() {
+        if (updating.get()) {
+            throw new IllegalStateException("updating");
+        }
+        applyCommands();
     }
 
     @SuppressWarnings("unchecked")
     public <T> EcsMapping<T> getMapping(final Class<T> type) {
         Objects.requireNonNull(type, "type");
-        return (EcsMapping<T>) mappingByClass.computeIfAbsent(type, $ ->
-                new EcsMapping<>(this, mappingIdCounter.getAndIncrement(), type));
+        return (EcsMapping<T>) mappingByClass.computeIfAbsent(type, $ -> {
+            final int id = mappingIdCounter.getAndIncrement();
+            if (id >= maxComponentCount) {
+                mappingIdCounter.decrementAndGet();
+                throw new IllegalStateException("max component count exceeded: " + maxComponentCount);
+            }
+            return new EcsMapping<>(this, id, type);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public <E> EcsEventChannel<E> getEventChannel(final Class<E> type) {
+        Objects.requireNonNull(type, "type");
+        return (EcsEventChannel<E>) eventChannelByClass.computeIfAbsent(type, $ -> new EcsEventChannel<>(this, type));
+    }
+
+    public <E> void publish(final E event) {
+        Objects.requireNonNull(event, "event");
+        @SuppressWarnings("unchecked") final Class<E> type = (Class<E>) event.getClass();
+        getEventChannel(type).publish(event);
+    }
+
+    public <T> EcsSpatialIndex<T> createSpatialIndex(final Class<T> type, final ToDoubleFunction<? super T> x,
+                                                     final ToDoubleFunction<? super T> y, final float cellSize) {
+        return createSpatialIndex(getMapping(type), x, y, cellSize);
+    }
+
+    public <T> EcsSpatialIndex<T> createSpatialIndex(final EcsMapping<T> mapping, final ToDoubleFunction<? super T> x,
+                                                     final ToDoubleFunction<? super T> y, final float cellSize) {
+        return createSpatialIndex(builder -> {
+        }, mapping, x, y, cellSize);
+    }
+
+    public <T> EcsSpatialIndex<T> createSpatialIndex(final Consumer<EcsBuilder> filter, final EcsMapping<T> mapping,
+                                                     final ToDoubleFunction<? super T> x,
+                                                     final ToDoubleFunction<? super T> y, final float cellSize) {
+        Objects.requireNonNull(x, "x");
+        Objects.requireNonNull(y, "y");
+        if (!(cellSize > 0.0f) || Float.isInfinite(cellSize)) {
+            throw new IllegalArgumentException("invalid cellSize: " + cellSize);
+        }
+        return addIndex(new EcsSpatialIndex<>(this, mapping, acquireIndexFamily(filter, mapping), x, y, cellSize));
+    }
+
+    public <T> EcsHashIndex<T> createHashIndex(final Class<T> type, final ToLongFunction<? super T> key) {
+        return createHashIndex(getMapping(type), key);
+    }
+
+    public <T> EcsHashIndex<T> createHashIndex(final EcsMapping<T> mapping, final ToLongFunction<? super T> key) {
+        return createHashIndex(builder -> {
+        }, mapping, key);
+    }
+
+    public <T> EcsHashIndex<T> createHashIndex(final Consumer<EcsBuilder> filter, final EcsMapping<T> mapping,
+                                               final ToLongFunction<? super T> key) {
+        Objects.requireNonNull(key, "key");
+        return addIndex(new EcsHashIndex<>(this, mapping, acquireIndexFamily(filter, mapping), key));
+    }
+
+    public <T> EcsSortedIndex<T> createSortedIndex(final Class<T> type, final ToLongFunction<? super T> key) {
+        return createSortedIndex(getMapping(type), key);
+    }
+
+    public <T> EcsSortedIndex<T> createSortedIndex(final EcsMapping<T> mapping, final ToLongFunction<? super T> key) {
+        return createSortedIndex(builder -> {
+        }, mapping, key);
+    }
+
+    public <T> EcsSortedIndex<T> createSortedIndex(final Consumer<EcsBuilder> filter, final EcsMapping<T> mapping,
+                                                   final ToLongFunction<? super T> key) {
+        Objects.requireNonNull(key, "key");
+        return addIndex(new EcsSortedIndex<>(this, mapping, acquireIndexFamily(filter, mapping), key));
+    }
+
+    void removeIndex(final EcsComponentIndex<?> index) {
+        if (index.shutdown()) {
+            indexes.remove(index);
+            releaseFamily(index.getFamily());
+        }
+    }
+
+    private EcsFamily acquireIndexFamily(final Consumer<EcsBuilder> filter, final EcsMapping<?> mapping) {
+        Objects.requireNonNull(filter, "filter");
+        Objects.requireNonNull(mapping, "mapping");
+        if (mapping.getEngine() != this) {
+            throw new IllegalArgumentException("engine mismatch");
+        }
+        if (mapping.getValueMapping() != null) {
+            throw new IllegalArgumentException("component is value mapped: " + mapping.getType().getName());
+        }
+        if (!updating.get()) {
+            flush();
+        }
+        final EcsBuilder builder = new EcsBuilder(this);
+        filter.accept(builder);
+        builder.allOf(mapping.getType());
+        return acquireFamily(builder.getAspect());
+    }
+
+    private <I extends EcsComponentIndex<?>> I addIndex(final I index) {
+        index.open();
+        indexes.add(index);
+        return index;
+    }
+
+    public EcsFloatMapping getFloatMapping(final Class<?> type) {
+        return getFloatMapping(type, EcsMemory.HEAP);
+    }
+
+    public EcsFloatMapping getFloatMapping(final Class<?> type, final EcsMemory memory) {
+        return getValueMapping(type, memory, EcsFloatMapping.class, mapping -> new EcsFloatMapping(mapping, memory));
+    }
+
+    public EcsIntMapping getIntMapping(final Class<?> type) {
+        return getIntMapping(type, EcsMemory.HEAP);
+    }
+
+    public EcsIntMapping getIntMapping(final Class<?> type, final EcsMemory memory) {
+        return getValueMapping(type, memory, EcsIntMapping.class, mapping -> new EcsIntMapping(mapping, memory));
+    }
+
+    public EcsLongMapping getLongMapping(final Class<?> type) {
+        return getLongMapping(type, EcsMemory.HEAP);
+    }
+
+    public EcsLongMapping getLongMapping(final Class<?> type, final EcsMemory memory) {
+        return getValueMapping(type, memory, EcsLongMapping.class, mapping -> new EcsLongMapping(mapping, memory));
+    }
+
+    public EcsStructMapping getStructMapping(final Class<?> type, final int size) {
+        return getStructMapping(type, size, EcsMemory.HEAP);
+    }
+
+    public EcsStructMapping getStructMapping(final Class<?> type, final int size, final EcsMemory memory) {
+        final EcsStructMapping result = getValueMapping(type, memory, EcsStructMapping.class, mapping ->
+                new EcsStructMapping(mapping, size, memory));
+        if (result.getSize() != size) {
+            throw new IllegalArgumentException("struct size mismatch: type=" + type.getName()
+                    + ", size=" + result.getSize());
+        }
+        return result;
     }
 
     public void addSystem(final EcsSystem system) {
@@ -81,8 +630,18 @@ public final class EcsEngine extends EcsContainer {
             system.setEngine(this);
             final EcsBuilder builder = new EcsBuilder(this);
             system.configure(builder);
-            system.setFamily(getFamily(builder.getAspect()));
+            system.setFamily(acquireFamily(builder.getAspect()));
+            system.setAccess(builder.getReads(), builder.getWrites());
+            system.setFilters(builder.getAdded(), builder.getChanged(), builder.getRemoved());
+            forEachFilter(system, tracker -> tracker.subscribe(system));
+            synchronized (intervalQueue) {
+                system.setOrder(systemOrder++);
+                if (system instanceof EcsIntervalSystem) {
+                    intervalQueue.add((EcsIntervalSystem) system);
+                }
+            }
             systems.add(system);
+            stages = null;
             return system;
         });
     }
@@ -95,7 +654,7 @@ public final class EcsEngine extends EcsContainer {
                 throw new IllegalStateException("system class added with another instance: "
                         + systemClass.getName());
             }
-            systems.remove(system);
+            systemRemoved(system);
             return null;
         });
     }
@@ -106,49 +665,1014 @@ public final class EcsEngine extends EcsContainer {
             if (existing == null) {
                 throw new IllegalArgumentException("system class not added: " + systemClass.getName());
             }
-            systems.remove(existing);
+            systemRemoved(existing);
             return null;
         });
     }
 
     public void update() {
+        update(clock.nanoTime());
+    }
+
+    private void update(final long now) {
         if (!updating.compareAndSet(false, true)) {
             throw new IllegalStateException("already updating");
         }
+        final Executor executor = this.executor;
+        final boolean measured = metrics.isEnabled();
+        final long start = (measured ? System.nanoTime() : 0L);
+        time = now;
+        for (final EcsEventChannel<?> eventChannel : eventChannelByClass.values()) {
+            eventChannel.swap();
+        }
+        pollDueSystems(now);
         try {
-            systems.forEach(EcsSystem::update);
+            if (executor == null) {
+                for (final EcsSystem system : systems) {
+                    if (!system.isIdle()) {
+                        updateSystem(system);
+                    }
+                }
+            } else {
+                deferring = true;
+                for (final EcsSystem[] stage : getStages()) {
+                    runStage(stage, executor);
+                    applyCommands();
+                }
+            }
         } finally {
+            deferring = false;
+            rescheduleDueSystems(now);
             updating.set(false);
-            pending.forEach(Runnable::run);
-            pending.clear();
+            applyCommands();
+            trimChanges();
+            releaseLeakedFamilies();
+            for (final EcsComponentIndex<?> index : indexes) {
+                index.refresh();
+            }
+            if (measured) {
+                metrics.tickCompleted(System.nanoTime() - start);
+            }
         }
     }
 
-    private EcsAspect getDistinctAspect(final EcsAspect aspect) {
-        return distinctAspectMap.computeIfAbsent(aspect, $ -> aspect);
+    private <T extends EcsValueMapping> T getValueMapping(final Class<?> type, final EcsMemory memory,
+                                                          final Class<T> kind,
+                                                          final Function<EcsMapping<?>, T> factory) {
+        Objects.requireNonNull(memory, "memory");
+        final EcsMapping<?> mapping = getMapping(type);
+        synchronized (mapping) {
+            EcsValueMapping valueMapping = mapping.getValueMapping();
+            if (valueMapping == null) {
+                if (isStored(mapping.getId())) {
+                    throw new IllegalStateException("component already stored: " + type.getName());
+                }
+                valueMapping = factory.apply(mapping);
+                mapping.setValueMapping(valueMapping);
+            }
+            if (!kind.isInstance(valueMapping)) {
+                throw new IllegalArgumentException("type already value mapped: type=" + type.getName()
+                        + ", mapping=" + valueMapping.getClass().getSimpleName());
+            }
+            if (valueMapping.getMemory() != memory) {
+                throw new IllegalArgumentException("memory mismatch: " + type.getName());
+            }
+            return kind.cast(valueMapping);
+        }
+    }
+
+    private boolean isStored(final int componentId) {
+        if (storage == EcsStorage.ARCHETYPE) {
+            for (final EcsArchetype archetype : archetypes) {
+                if (archetype.getBitSet().get(componentId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        final EcsEntity[] slots = this.slots;
+        for (final EcsEntity entity : slots) {
+            if (entity != null && entity.hasComponent(componentId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    EcsArchetype getArchetype(final EcsBitSet bitSet) {
+        EcsArchetype archetype = archetypeByBitSet.get(bitSet);
+        if (archetype == null) {
+            final EcsBitSet key = bitSet.copy();
+            archetype = new EcsArchetype(this, archetypes.size(), key);
+            for (final EcsFamily family : familyByAspectMap.values()) {
+                linkFamily(archetype, family);
+            }
+            archetypeByBitSet.put(key, archetype);
+            archetypes.add(archetype);
+        }
+        return archetype;
+    }
+
+    void archetypeChanged(final EcsEntity entity, final EcsArchetype source) {
+        final EcsArchetype target = entity.getArchetype();
+        for (final EcsFamily family : source.getFamilies()) {
+            if (!family.test(target)) {
+                family.getOnEntityRemoved().dispatchMessage(entity);
+            }
+        }
+        for (final EcsFamily family : target.getFamilies()) {
+            if (!family.test(source)) {
+                family.getOnEntityAdded().dispatchMessage(entity);
+            }
+        }
+    }
+
+    boolean isDeferring() {
+        return deferring;
+    }
+
+    void parallelForEach(final EcsContainer container, final int batchSize, final Consumer<EcsEntity> action) {
+        parallelForEach(container.spliterator(batchSize), action);
+    }
+
+    void parallelForEach(final Spliterator<EcsEntity> spliterator, final Consumer<EcsEntity> action) {
+        Objects.requireNonNull(action, "action");
+        final Executor executor = this.executor;
+        final ForkJoinPool pool = (executor instanceof ForkJoinPool ? (ForkJoinPool) executor
+                : ForkJoinPool.commonPool());
+        final boolean wasDeferring = deferring;
+        deferring = true;
+        try {
+            pool.submit(() -> StreamSupport.stream(spliterator, true).forEach(action)).join();
+        } finally {
+            deferring = wasDeferring;
+        }
+        if (!wasDeferring && !updating.get()) {
+            applyCommands();
+        }
+    }
+
+    void componentChanged(final EcsEntity entity, final int componentId) {
+        if (hasEntity(entity)) {
+            for (final EcsFamily family : familiesByComponent[componentId]) {
+                family.update(entity);
+            }
+        }
+    }
+
+    void componentsChanged(final EcsEntity entity, final EcsArchetype source, final EcsBitSet changed) {
+        if (storage == EcsStorage.ARCHETYPE) {
+            if (entity.getArchetype() != source) {
+                archetypeChanged(entity, source);
+            }
+            return;
+        }
+        final int stamp = nextFamilyStamp();
+        for (int componentId = changed.nextSetBit(0); componentId >= 0;
+             componentId = changed.nextSetBit(componentId + 1)) {
+            for (final EcsFamily family : familiesByComponent[componentId]) {
+                if (familyStamps[family.getId()] != stamp) {
+                    familyStamps[family.getId()] = stamp;
+                    family.update(entity);
+                }
+            }
+        }
+    }
+
+    void addEntityNow(final EcsEntity entity) {
+        super.addEntity(entity);
+        metrics.entityCreated();
+        if (storage == EcsStorage.ARCHETYPE) {
+            final EcsArchetype archetype = getArchetype(entity.getBitSet());
+            entity.store(archetype);
+            archetype.getFamilies().forEach(family -> family.getOnEntityAdded().dispatchMessage(entity));
+        } else {
+            addToFamilies(entity);
+        }
+    }
+
+    boolean isUpdating() {
+        return updating.get();
+    }
+
+    int advanceChangeTick() {
+        return changeTick.getAndIncrement();
+    }
+
+    void forEachMapping(final Consumer<EcsMapping<?>> action) {
+        mappingByClass.values().forEach(action);
+    }
+
+    EcsMapping<?>[] getMappings() {
+        final EcsMapping<?>[] result = new EcsMapping<?>[maxComponentCount];
+        for (final EcsMapping<?> mapping : mappingByClass.values()) {
+            result[mapping.getId()] = mapping;
+        }
+        return result;
+    }
+
+    EcsMapping<?> getMapping(final String typeName) {
+        for (final EcsMapping<?> mapping : mappingByClass.values()) {
+            if (mapping.getType().getName().equals(typeName)) {
+                return mapping;
+            }
+        }
+        final ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        final ClassLoader loader = (contextLoader != null ? contextLoader : EcsEngine.class.getClassLoader());
+        try {
+            return getMapping(Class.forName(typeName, false, loader));
+        } catch (final ClassNotFoundException exc) {
+            throw new IllegalStateException("unknown component type: " + typeName, exc);
+        }
+    }
+
+    EcsChangeTracker getChangeTracker(final int componentId) {
+        return changeTrackers[componentId];
     }
 
-    private EcsFamily getFamily(final EcsAspect aspect) {
-        final EcsAspect distinctAspect = getDistinctAspect(aspect);
-        return familyByAspectMap.computeIfAbsent(distinctAspect, $ -> {
-                    final EcsFamily family = new EcsFamily(familyIdCounter.getAndIncrement(), aspect);
-                    forEach(entity -> {
-                        if (family.test(entity)) {
-                            family.addEntity(entity);
-                        }
-                    });
-                    getOnEntityAdded().addConsumer(entity -> {
-                        if (family.test(entity)) {
-                            family.addEntity(entity);
-                        }
-                    });
-                    getOnEntityRemoved().addConsumer(entity -> {
-                        if (family.test(entity)) {
-                            family.removeEntity(entity);
-                        }
-                    });
-                    return family;
-                }
-        );
+    EcsChangeTracker getChangeTracker(final int componentId, final boolean create) {
+        synchronized (changeTrackers) {
+            EcsChangeTracker result = changeTrackers[componentId];
+            if (result == null && create) {
+                result = new EcsChangeTracker(componentId, slots.length);
+                changeTrackers[componentId] = result;
+            }
+            return result;
+        }
+    }
+
+    void trackAdded(final EcsEntity entity, final int componentId) {
+        final EcsChangeTracker tracker = changeTrackers[componentId];
+        if (tracker != null) {
+            tracker.added(entity, changeTick.get());
+        }
+    }
+
+    void trackChanged(final EcsEntity entity, final int componentId) {
+        final EcsChangeTracker tracker = changeTrackers[componentId];
+        if (tracker != null) {
+            tracker.changed(entity, changeTick.get());
+        }
+    }
+
+    void trackRemoved(final EcsEntity entity, final int componentId) {
+        final EcsChangeTracker tracker = changeTrackers[componentId];
+        if (tracker != null) {
+            tracker.removed(entity, changeTick.get());
+        }
+    }
+
+    EcsFilterBuffer getFilteredEntities(final EcsSystem system) {
+        final EcsFamily family = system.getFamily();
+        final EcsFilterBuffer buffer = system.getFilterBuffer();
+        buffer.clear();
+        final int sinceTick = system.getChangeTick();
+        if (sinceTick == 0 && (system.getAdded() != null || system.getChanged() != null)) {
+            family.forEach(buffer::addEntity);
+            return buffer;
+        }
+        collectFiltered(system.getAdded(), EcsChangeTracker.ADDED, sinceTick, buffer);
+        collectFiltered(system.getChanged(), EcsChangeTracker.CHANGED, sinceTick, buffer);
+        collectFiltered(system.getRemoved(), EcsChangeTracker.REMOVED, sinceTick, buffer);
+        final int handleCount = buffer.sortHandles();
+        for (int index = 0; index < handleCount; index++) {
+            final long handle = buffer.getHandle(index);
+            if (isAlive(handle)) {
+                final EcsEntity entity = slots[EcsHandle.index(handle)];
+                if (hasEntity(entity) && family.getAspect().test(entity.getBitSet())) {
+                    buffer.addEntity(entity);
+                }
+            }
+        }
+        return buffer;
+    }
+
+    int getFamilyVersion() {
+        return familyVersion;
+    }
+
+    EcsFamily[] getFamilies(final EcsBitSet bitSet) {
+        return familyByAspectMap.values().stream().filter(family -> family.getAspect().test(bitSet))
+                .toArray(EcsFamily[]::new);
+    }
+
+    void addEntitiesNow(final EcsPrefab prefab, final EcsEntity[] entities) {
+        super.addEntities(entities, entities.length);
+        metrics.entitiesCreated(entities.length);
+        final EcsBitSet bitSet = prefab.getBitSet();
+        final EcsEntity[] batch = new EcsEntity[entities.length];
+        int batchSize = 0;
+        if (storage == EcsStorage.ARCHETYPE) {
+            final EcsArchetype prefabArchetype = getArchetype(bitSet);
+            for (final EcsEntity entity : entities) {
+                if (entity.getBitSet().equals(bitSet)) {
+                    entity.store(prefabArchetype);
+                    batch[batchSize++] = entity;
+                } else {
+                    final EcsArchetype archetype = getArchetype(entity.getBitSet());
+                    entity.store(archetype);
+                    archetype.getFamilies().forEach(family -> family.getOnEntityAdded().dispatchMessage(entity));
+                }
+            }
+            for (final EcsFamily family : prefabArchetype.getFamilies()) {
+                for (int index = 0; index < batchSize; index++) {
+                    family.getOnEntityAdded().dispatchMessage(batch[index]);
+                }
+            }
+            return;
+        }
+        for (final EcsEntity entity : entities) {
+            if (entity.getBitSet().equals(bitSet)) {
+                batch[batchSize++] = entity;
+            } else {
+                addToFamilies(entity);
+            }
+        }
+        for (final EcsFamily family : prefab.getFamilies()) {
+            family.addEntities(batch, batchSize);
+        }
+    }
+
+    void addEntitiesNow(final EcsEntity[] entities, final int count) {
+        super.addEntities(entities, count);
+        metrics.entitiesCreated(count);
+        int start = 0;
+        while (start < count) {
+            final EcsBitSet bitSet = entities[start].getBitSet();
+            int end = start + 1;
+            while (end < count && entities[end].getBitSet().equals(bitSet)) {
+                end++;
+            }
+            if (storage == EcsStorage.ARCHETYPE) {
+                final EcsArchetype archetype = getArchetype(bitSet);
+                for (int index = start; index < end; index++) {
+                    entities[index].store(archetype);
+                }
+                for (final EcsFamily family : archetype.getFamilies()) {
+                    for (int index = start; index < end; index++) {
+                        family.getOnEntityAdded().dispatchMessage(entities[index]);
+                    }
+                }
+            } else if (end - start == 1) {
+                addToFamilies(entities[start]);
+            } else {
+                final EcsEntity[] batch = Arrays.copyOfRange(entities, start, end);
+                for (final EcsFamily family : getFamilies(bitSet)) {
+                    family.addEntities(batch, batch.length);
+                }
+            }
+            start = end;
+        }
+    }
+
+    int destroyEntities(final List<EcsEntity> victims, final boolean batched) {
+        if (updating.get() || deferring) {
+            final EcsCommandBuffer commandBuffer = getCommandBuffer();
+            for (final EcsEntity entity : victims) {
+                commandBuffer.destroy(entity.getHandle());
+            }
+            return victims.size();
+        }
+        if (victims.isEmpty()) {
+            return 0;
+        }
+        final EcsBitSet victimIds = EcsBitSet.create(slots.length);
+        for (final EcsEntity entity : victims) {
+            victimIds.set(entity.getId());
+            final EcsBitSet bitSet = entity.getBitSet();
+            for (int componentId = bitSet.nextSetBit(0); componentId >= 0;
+                 componentId = bitSet.nextSetBit(componentId + 1)) {
+                trackRemoved(entity, componentId);
+            }
+        }
+        if (storage == EcsStorage.ARCHETYPE) {
+            removeEntities(victimIds, batched);
+            final Map<EcsFamily, List<EcsEntity>> removedByFamily = new LinkedHashMap<>();
+            for (final EcsEntity entity : victims) {
+                final EcsArchetype archetype = entity.getArchetype();
+                entity.unstore();
+                for (final EcsFamily family : archetype.getFamilies()) {
+                    removedByFamily.computeIfAbsent(family, $ -> new ArrayList<>()).add(entity);
+                }
+            }
+            removedByFamily.forEach((family, removed) -> family.notifyRemoved(removed, batched));
+        } else {
+            final EcsFamily[] familiesById = this.familiesById;
+            final EcsBitSet affected = EcsBitSet.create(familiesById.length);
+            for (final EcsEntity entity : victims) {
+                for (int familyId = Math.min(entity.getIndexCount(), familiesById.length); --familyId > 0; ) {
+                    if (entity.getIndex(familyId) != -1) {
+                        affected.set(familyId);
+                    }
+                }
+            }
+            for (int familyId = affected.nextSetBit(0); familyId >= 0; familyId = affected.nextSetBit(familyId + 1)) {
+                familiesById[familyId].removeEntities(victimIds, batched);
+            }
+            removeEntities(victimIds, batched);
+        }
+        metrics.entitiesDestroyed(victims.size());
+        releaseEntities(victims);
+        return victims.size();
+    }
+
+    void removeEntityNow(final EcsEntity entity) {
+        final EcsBitSet bitSet = entity.getBitSet();
+        for (int componentId = bitSet.nextSetBit(0); componentId >= 0;
+             componentId = bitSet.nextSetBit(componentId + 1)) {
+            trackRemoved(entity, componentId);
+        }
+        if (storage == EcsStorage.ARCHETYPE) {
+            super.removeEntity(entity);
+            final EcsArchetype archetype = entity.getArchetype();
+            entity.unstore();
+            archetype.getFamilies().forEach(family -> family.getOnEntityRemoved().dispatchMessage(entity));
+        } else {
+            removeFromFamilies(entity);
+            super.removeEntity(entity);
+        }
+        metrics.entityDestroyed();
+        releaseEntity(entity);
+    }
+
+    private void systemRemoved(final EcsSystem system) {
+        systems.remove(system);
+        releaseFamily(system.getFamily());
+        system.setFamily(null);
+        forEachFilter(system, tracker -> tracker.unsubscribe(system));
+        stages = null;
+        if (system instanceof EcsIntervalSystem) {
+            synchronized (intervalQueue) {
+                intervalQueue.remove(system);
+                ((EcsIntervalSystem) system).unschedule();
+            }
+        }
+        system.releaseCommandBuffer();
+        system.closeIndexes();
+    }
+
+    private void forEachFilter(final EcsSystem system, final Consumer<EcsChangeTracker> action) {
+        final EcsBitSet filters = EcsBitSet.create(maxComponentCount);
+        for (final EcsBitSet filter : new EcsBitSet[]{system.getAdded(), system.getChanged(), system.getRemoved()}) {
+            if (filter != null) {
+                for (int componentId = filter.nextSetBit(0); componentId >= 0;
+                     componentId = filter.nextSetBit(componentId + 1)) {
+                    if (filters.setIfCleared(componentId)) {
+                        action.accept(getChangeTracker(componentId, true));
+                    }
+                }
+            }
+        }
+    }
+
+    private void collectFiltered(final EcsBitSet filter, final int kind, final int sinceTick,
+                                 final LongConsumer action) {
+        if (filter != null) {
+            for (int componentId = filter.nextSetBit(0); componentId >= 0;
+                 componentId = filter.nextSetBit(componentId + 1)) {
+                changeTrackers[componentId].collect(sinceTick, kind, action);
+            }
+        }
+    }
+
+    private void trimChanges() {
+        for (final EcsChangeTracker tracker : changeTrackers) {
+            if (tracker != null) {
+                tracker.trim();
+            }
+        }
+    }
+
+    private void pollDueSystems(final long now) {
+        synchronized (intervalQueue) {
+            EcsIntervalSystem system;
+            while ((system = intervalQueue.peek()) != null && system.isDue(now)) {
+                intervalQueue.poll();
+                system.setDue(true);
+                dueSystems.add(system);
+            }
+        }
+    }
+
+    private void rescheduleDueSystems(final long now) {
+        synchronized (intervalQueue) {
+            for (final EcsIntervalSystem system : dueSystems) {
+                system.setDue(false);
+                if (systems.contains(system)) {
+                    system.schedule(now);
+                    intervalQueue.add(system);
+                }
+            }
+            dueSystems.clear();
+        }
+    }
+
+    private EcsSystem[][] getStages() {
+        EcsSystem[][] result = stages;
+        if (result == null) {
+            final List<List<EcsSystem>> stageList = new ArrayList<>();
+            final Map<EcsSystem, Integer> stageBySystem = new HashMap<>();
+            for (final EcsSystem system : systems) {
+                int stage = 0;
+                for (final Map.Entry<EcsSystem, Integer> entry : stageBySystem.entrySet()) {
+                    if (entry.getValue() >= stage && system.conflictsWith(entry.getKey())) {
+                        stage = entry.getValue() + 1;
+                    }
+                }
+                if (stage == stageList.size()) {
+                    stageList.add(new ArrayList<>());
+                }
+                stageList.get(stage).add(system);
+                stageBySystem.put(system, stage);
+            }
+            result = stageList.stream().map(stage -> stage.toArray(new EcsSystem[0])).toArray(EcsSystem[][]::new);
+            stages = result;
+        }
+        return result;
+    }
+
+    private void runStage(final EcsSystem[] stage, final Executor executor) {
+        if (stage.length == 1) {
+            if (!stage[0].isIdle()) {
+                updateSystem(stage[0]);
+            }
+            return;
+        }
+        final int tick = changeTick.incrementAndGet();
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[stage.length];
+        int count = 0;
+        for (final EcsSystem system : stage) {
+            if (!system.isIdle()) {
+                futures[count++] = CompletableFuture.runAsync(updateSystemTask(system, tick), executor);
+            }
+        }
+        try {
+            CompletableFuture.allOf(Arrays.copyOf(futures, count)).join();
+        } catch (final CompletionException exc) {
+            final Throwable cause = exc.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw exc;
+        } finally {
+            changeTick.incrementAndGet();
+        }
+    }
+
+    private Runnable updateSystemTask(final EcsSystem system, final int tick) {
+        return () -> updateSystem(system, tick);
+    }
+
+    private void updateSystem(final EcsSystem system) {
+        final int tick = changeTick.incrementAndGet();
+        try {
+            updateSystem(system, tick);
+        } finally {
+            changeTick.incrementAndGet();
+        }
+    }
+
+    private void updateSystem(final EcsSystem system, final int tick) {
+        try {
+            if (!metrics.isEnabled()) {
+                system.update();
+                return;
+            }
+            final long start = System.nanoTime();
+            try {
+                system.update();
+            } finally {
+                metrics.systemUpdated(system, System.nanoTime() - start);
+            }
+        } finally {
+            system.setChangeTick(tick);
+        }
+    }
+
+    void forEachSystem(final Consumer<EcsSystem> action) {
+        systems.forEach(action);
+    }
+
+    void forEachFamily(final Consumer<EcsFamily> action) {
+        familyByAspectMap.values().forEach(action);
+    }
+
+    private EcsCommandBuffer checkOutCommandBuffer() {
+        synchronized (pooledCommandBuffers) {
+            EcsCommandBuffer result = freeCommandBuffers.pollLast();
+            if (result == null) {
+                result = new EcsCommandBuffer(this);
+                pooledCommandBuffers.add(result);
+            }
+            result.setEpoch(commandEpoch);
+            return result;
+        }
+    }
+
+    private void drainCommandBuffers() {
+        for (final EcsCommandBuffer commandBuffer : commandBuffers) {
+            commandBuffer.drainTo(syncCommandBuffer);
+        }
+        synchronized (pooledCommandBuffers) {
+            for (final EcsCommandBuffer commandBuffer : pooledCommandBuffers) {
+                commandBuffer.drainTo(syncCommandBuffer);
+            }
+        }
+    }
+
+    private void recycleCommandBuffers() {
+        synchronized (pooledCommandBuffers) {
+            final int epoch = commandEpoch;
+            final int size = pooledCommandBuffers.size();
+            int count = 0;
+            freeCommandBuffers.clear();
+            for (int index = 0; index < size; index++) {
+                final EcsCommandBuffer commandBuffer = pooledCommandBuffers.get(index);
+                if (commandBuffer.getEpoch() == epoch || !commandBuffer.isEmpty()) {
+                    pooledCommandBuffers.set(count++, commandBuffer);
+                    freeCommandBuffers.addLast(commandBuffer);
+                }
+            }
+            pooledCommandBuffers.subList(count, size).clear();
+            commandEpoch = epoch + 1;
+        }
+    }
+
+    private void applyCommands() {
+        while (true) {
+            drainCommandBuffers();
+            metrics.commandsPending(syncCommandBuffer.size());
+            if (syncCommandBuffer.isEmpty()) {
+                recycleCommandBuffers();
+                return;
+            }
+            syncCommandBuffer.apply();
+        }
+    }
+
+    private void addToFamilies(final EcsEntity entity) {
+        final int stamp = nextFamilyStamp();
+        final EcsBitSet bitSet = entity.getBitSet();
+        for (int componentId = bitSet.nextSetBit(0); componentId >= 0;
+             componentId = bitSet.nextSetBit(componentId + 1)) {
+            for (final EcsFamily family : familiesByComponent[componentId]) {
+                if (familyStamps[family.getId()] != stamp) {
+                    familyStamps[family.getId()] = stamp;
+                    if (family.test(entity)) {
+                        family.addEntity(entity);
+                    }
+                }
+            }
+        }
+        for (final EcsFamily family : unconditionalFamilies) {
+            if (familyStamps[family.getId()] != stamp && family.test(entity)) {
+                family.addEntity(entity);
+            }
+        }
+    }
+
+    private void removeFromFamilies(final EcsEntity entity) {
+        final EcsFamily[] familiesById = this.familiesById;
+        for (int familyId = Math.min(entity.getIndexCount(), familiesById.length); --familyId > 0; ) {
+            if (entity.getIndex(familyId) != -1) {
+                familiesById[familyId].removeEntity(entity);
+            }
+        }
+    }
+
+    private int nextFamilyStamp() {
+        if (++familyStamp == 0) {
+            Arrays.fill(familyStamps, 0);
+            familyStamp = 1;
+        }
+        return familyStamp;
+    }
+
+    private void indexFamily(final EcsFamily family) {
+        final int familyId = family.getId();
+        if (familyId >= familiesById.length) {
+            familiesById = Arrays.copyOf(familiesById, (familyId + 1) * 3 / 2);
+            familyStamps = Arrays.copyOf(familyStamps, familiesById.length);
+        }
+        familiesById[familyId] = family;
+        final EcsAspect aspect = family.getAspect();
+        final EcsBitSet mentioned = EcsBitSet.create(maxComponentCount);
+        final boolean conditional = indexFamily(family, aspect.getAllOf(), mentioned)
+                | indexFamily(family, aspect.getAnyOf(), mentioned);
+        indexFamily(family, aspect.getNoneOf(), mentioned);
+        if (!conditional) {
+            unconditionalFamilies = append(unconditionalFamilies, family);
+        }
+    }
+
+    private boolean indexFamily(final EcsFamily family, final EcsBitSet bitSet, final EcsBitSet mentioned) {
+        if (bitSet == null) {
+            return false;
+        }
+        boolean indexed = false;
+        for (int componentId = bitSet.nextSetBit(0); componentId >= 0;
+             componentId = bitSet.nextSetBit(componentId + 1)) {
+            if (!mentioned.getAndSet(componentId)) {
+                familiesByComponent[componentId] = append(familiesByComponent[componentId], family);
+            }
+            indexed = true;
+        }
+        return indexed;
+    }
+
+    private void unindexFamily(final EcsFamily family) {
+        familiesById[family.getId()] = null;
+        for (int componentId = 0; componentId < maxComponentCount; componentId++) {
+            familiesByComponent[componentId] = remove(familiesByComponent[componentId], family);
+        }
+        unconditionalFamilies = remove(unconditionalFamilies, family);
+    }
+
+    private static EcsFamily[] remove(final EcsFamily[] families, final EcsFamily family) {
+        for (int index = 0; index < families.length; index++) {
+            if (families[index] == family) {
+                final EcsFamily[] result = new EcsFamily[families.length - 1];
+                System.arraycopy(families, 0, result, 0, index);
+                System.arraycopy(families, index + 1, result, index, result.length - index);
+                return result;
+            }
+        }
+        return families;
+    }
+
+    private static EcsFamily[] append(final EcsFamily[] families, final EcsFamily family) {
+        final EcsFamily[] result = Arrays.copyOf(families, families.length + 1);
+        result[families.length] = family;
+        return result;
+    }
+
+    EcsEntity[] allocateEntities(final int count) {
+        final EcsEntity[] result = new EcsEntity[count];
+        synchronized (slotLock) {
+            final int capacity = slotCount + Math.max(0, count - freeSlotCount);
+            if (capacity > slots.length) {
+                slots = Arrays.copyOf(slots, capacity);
+                generations = Arrays.copyOf(generations, capacity);
+            }
+            for (int index = 0; index < count; index++) {
+                result[index] = allocateEntity();
+            }
+        }
+        return result;
+    }
+
+    EcsEntity allocateEntity() {
+        synchronized (slotLock) {
+            final int index;
+            if (freeSlotCount > 0) {
+                index = freeSlots[--freeSlotCount];
+            } else {
+                index = slotCount++;
+                if (index >= slots.length) {
+                    final int newLength = (index + 1) * 3 / 2;
+                    slots = Arrays.copyOf(slots, newLength);
+                    generations = Arrays.copyOf(generations, newLength);
+                }
+            }
+            final EcsEntity entity = newEntity(index, generations[index]);
+            slots[index] = entity;
+            return entity;
+        }
+    }
+
+    private EcsEntity newEntity(final int index, final int generation) {
+        if (entityPoolCount > 0) {
+            final EcsEntity released = entityPool[--entityPoolCount];
+            entityPool[entityPoolCount] = null;
+            return new EcsEntity(index, generation, released);
+        }
+        return new EcsEntity(index, generation, this);
+    }
+
+    int[] getGenerations() {
+        synchronized (slotLock) {
+            return Arrays.copyOf(generations, slotCount);
+        }
+    }
+
+    void restoreGenerations(final int[] generations) {
+        synchronized (slotLock) {
+            if (generations.length > this.generations.length) {
+                slots = Arrays.copyOf(slots, generations.length);
+                this.generations = Arrays.copyOf(this.generations, generations.length);
+            }
+            System.arraycopy(generations, 0, this.generations, 0, generations.length);
+            slotCount = Math.max(slotCount, generations.length);
+            freeSlotCount = 0;
+        }
+    }
+
+    EcsEntity restoreEntity(final long handle) {
+        synchronized (slotLock) {
+            final int index = EcsHandle.index(handle);
+            if (index >= slots.length) {
+                final int newLength = (index + 1) * 3 / 2;
+                slots = Arrays.copyOf(slots, newLength);
+                generations = Arrays.copyOf(generations, newLength);
+            }
+            for (int free = freeSlotCount - 1; free >= 0; free--) {
+                if (freeSlots[free] == index) {
+                    freeSlots[free] = freeSlots[--freeSlotCount];
+                    break;
+                }
+            }
+            while (slotCount < index) {
+                if (freeSlotCount >= freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, (freeSlotCount + 1) * 3 / 2);
+                }
+                freeSlots[freeSlotCount++] = slotCount++;
+            }
+            slotCount = Math.max(slotCount, index + 1);
+            if (slots[index] != null && hasEntity(slots[index])) {
+                throw new IllegalStateException("slot in use: " + EcsHandle.toString(handle));
+            }
+            generations[index] = EcsHandle.generation(handle);
+            final EcsEntity entity = newEntity(index, generations[index]);
+            slots[index] = entity;
+            return entity;
+        }
+    }
+
+    void restoreSlots(final int[] generations, final int[] freeSlots) {
+        synchronized (slotLock) {
+            final int count = generations.length;
+            for (int index = count; index < slotCount; index++) {
+                if (slots[index] != null && hasEntity(slots[index])) {
+                    throw new IllegalStateException("slot in use: " + index);
+                }
+                slots[index] = null;
+                this.generations[index] = 0;
+            }
+            if (count > this.generations.length) {
+                slots = Arrays.copyOf(slots, count);
+                this.generations = Arrays.copyOf(this.generations, count);
+            }
+            System.arraycopy(generations, 0, this.generations, 0, count);
+            for (final int index : freeSlots) {
+                if (slots[index] != null && hasEntity(slots[index])) {
+                    throw new IllegalStateException("slot in use: " + index);
+                }
+                slots[index] = null;
+            }
+            slotCount = count;
+            this.freeSlots = Arrays.copyOf(freeSlots, freeSlots.length);
+            freeSlotCount = freeSlots.length;
+        }
+    }
+
+    int[] getFreeSlots() {
+        synchronized (slotLock) {
+            return Arrays.copyOf(freeSlots, freeSlotCount);
+        }
+    }
+
+    void restoreFreeSlots(final int[] freeSlots) {
+        synchronized (slotLock) {
+            for (final int index : freeSlots) {
+                if (index < 0 || index >= slotCount || (slots[index] != null && hasEntity(slots[index]))) {
+                    throw new IllegalStateException("slot in use: " + index);
+                }
+            }
+            this.freeSlots = Arrays.copyOf(freeSlots, freeSlots.length);
+            freeSlotCount = freeSlots.length;
+        }
+    }
+
+    void releaseEntities(final List<EcsEntity> entities) {
+        synchronized (slotLock) {
+            for (final EcsEntity entity : entities) {
+                releaseEntity(entity);
+            }
+        }
+    }
+
+    void releaseEntity(final EcsEntity entity) {
+        synchronized (slotLock) {
+            final int index = entity.getId();
+            if (slots[index] != entity || generations[index] != entity.getGeneration()) {
+                return;
+            }
+            generations[index]++;
+            slots[index] = null;
+            if (entityPooling) {
+                if (entityPoolCount >= entityPool.length) {
+                    entityPool = Arrays.copyOf(entityPool, (entityPoolCount + 1) * 3 / 2);
+                }
+                entityPool[entityPoolCount++] = entity;
+            }
+            if (freeSlotCount >= freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, (freeSlotCount + 1) * 3 / 2);
+            }
+            freeSlots[freeSlotCount++] = index;
+        }
+    }
+
+    private void linkFamily(final EcsArchetype archetype, final EcsFamily family) {
+        if (family.test(archetype)) {
+            archetype.addFamily(family);
+            family.addArchetype(archetype);
+        }
+    }
+
+    private EcsAspect getDistinctAspect(final EcsAspect aspect) {
+        return distinctAspectMap.computeIfAbsent(aspect, $ -> aspect);
+    }
+
+    EcsFamily acquireFamily(final EcsAspect aspect) {
+        Objects.requireNonNull(aspect, "aspect");
+        synchronized (familyLock) {
+            final EcsAspect distinctAspect = getDistinctAspect(aspect);
+            EcsFamily family = familyByAspectMap.get(distinctAspect);
+            if (family == null) {
+                family = createFamily(distinctAspect);
+                familyByAspectMap.put(distinctAspect, family);
+                familyVersion++;
+            }
+            if (family.retain() == 1) {
+                idleFamilies.remove(family);
+            }
+            return family;
+        }
+    }
+
+    void queryLeaked(final EcsFamily family) {
+        metrics.queryLeaked();
+        leakedFamilies.add(family);
+    }
+
+    private void releaseLeakedFamilies() {
+        EcsFamily family;
+        while ((family = leakedFamilies.poll()) != null) {
+            releaseFamily(family);
+        }
+    }
+
+    void releaseFamily(final EcsFamily family) {
+        Objects.requireNonNull(family, "family");
+        synchronized (familyLock) {
+            if (familyByAspectMap.get(family.getAspect()) != family) {
+                throw new IllegalArgumentException("family not registered: " + family.getId());
+            }
+            if (family.release() == 0) {
+                idleFamilies.add(family);
+                trimFamilies();
+            }
+        }
+    }
+
+    private EcsFamily createFamily(final EcsAspect aspect) {
+        final EcsFamily family = new EcsFamily(this, nextFamilyId(), aspect, storage);
+        if (storage == EcsStorage.ARCHETYPE) {
+            archetypes.forEach(archetype -> linkFamily(archetype, family));
+            return family;
+        }
+        forEach(entity -> {
+            if (family.test(entity)) {
+                family.addEntity(entity);
+            }
+        });
+        indexFamily(family);
+        return family;
+    }
+
+    private int nextFamilyId() {
+        return (freeFamilyIdCount > 0 ? freeFamilyIds[--freeFamilyIdCount] : familyIdCounter.getAndIncrement());
+    }
+
+    private void trimFamilies() {
+        final Iterator<EcsFamily> iterator = idleFamilies.iterator();
+        while (idleFamilies.size() > familyCacheSize) {
+            final EcsFamily family = iterator.next();
+            iterator.remove();
+            evictFamily(family);
+        }
+    }
+
+    private void evictFamily(final EcsFamily family) {
+        final EcsAspect aspect = family.getAspect();
+        familyByAspectMap.remove(aspect);
+        distinctAspectMap.remove(aspect);
+        familyVersion++;
+        if (storage == EcsStorage.ARCHETYPE) {
+            for (final EcsArchetype archetype : family.getArchetypes()) {
+                archetype.removeFamily(family);
+            }
+            family.getArchetypes().clear();
+        } else {
+            unindexFamily(family);
+            family.evictEntities();
+        }
+        if (freeFamilyIdCount >= freeFamilyIds.length) {
+            freeFamilyIds = Arrays.copyOf(freeFamilyIds, (freeFamilyIdCount + 1) * 3 / 2);
+        }
+        freeFamilyIds[freeFamilyIdCount++] = family.getId();
     }
 }
@@ -1,48 +1,79 @@
 package org.dru.dusap.ecs;
 
-import org.dru.dusap.messaging.DefaultMessagePipe;
-import org.dru.dusap.messaging.MessagePipe;
-
 import java.util.Arrays;
 import java.util.Objects;
 
 public final class EcsEntity {
+    private static final Object[] NO_COMPONENTS = new Object[0];
+    private static final int[] NO_INDEXES = new int[0];
+
     private final EcsEngine engine;
     private final int id;
-    private final MessagePipe<EcsEntity> onComponentAdded;
-    private final MessagePipe<EcsEntity> onComponentRemoved;
-    private final EcsBitSet bitSet;
+    private int generation;
+    private EcsBitSet bitSet;
     private Object[] components;
+    private int index;
     private int[] indexes;
+    private EcsArchetype archetype;
+    private EcsChunk chunk;
+    private int row;
 
-    EcsEntity(final int id, final EcsEngine engine) {
+    EcsEntity(final int id, final int generation, final EcsEngine engine) {
         Objects.requireNonNull(engine, "entityComponentSystem");
         this.id = id;
+        this.generation = generation;
         this.engine = engine;
-        onComponentAdded = new DefaultMessagePipe<>();
-        onComponentRemoved = new DefaultMessagePipe<>();
-        bitSet = new EcsBitSet(engine.getMaxComponentCount());
-        components = new Object[0];
-        indexes = new int[0];
+        bitSet = EcsBitSet.create(engine.getMaxComponentCount());
+        components = NO_COMPONENTS;
+        index = -1;
+        indexes = NO_INDEXES;
+        archetype = null;
+        chunk = null;
+        row = -1;
+    }
+
+    EcsEntity(final int id, final int generation, final EcsEntity released) {
+        this.id = id;
+        this.generation = generation;
+        engine = released.engine;
+        bitSet = released.bitSet;
+        bitSet.clear();
+        components = released.components;
+        Arrays.fill(components, null);
+        index = -1;
+        indexes = released.indexes;
+        Arrays.fill(indexes, -1);
+        archetype = null;
+        chunk = null;
+        row = -1;
+        released.bitSet = null;
+        released.components = NO_COMPONENTS;
+        released.indexes = NO_INDEXES;
     }
 
     public int getId() {
         return id;
     }
 
-    public EcsEngine getEngine() {
-        return engine;
+    public int getGeneration() {
+        return generation;
     }
 
-    MessagePipe<EcsEntity> getOnComponentAdded() {
-        return onComponentAdded;
+    public long getHandle() {
+        return EcsHandle.of(id, generation);
     }
 
-    MessagePipe<EcsEntity> getOnComponentRemoved() {
-        return onComponentRemoved;
+    public EcsEngine getEngine() {
+        return engine;
     }
 
     EcsBitSet getBitSet() {
+        if (archetype != null) {
+            return archetype.getBitSet();
+        }
+        if (bitSet == null) {
+            throw new IllegalStateException("entity recycled: " + EcsHandle.toString(getHandle()));
+        }
         return bitSet;
     }
 
@@ -63,11 +94,15 @@ public final class EcsEntity {
         if (!hasComponent(id)) {
             throw new IllegalArgumentException("component not set: " + id);
         }
+        return (chunk != null ? chunk.get(id, row & EcsArchetype.CHUNK_MASK) : components[id]);
+    }
+
+    Object getStoredComponent(final int id) {
         return components[id];
     }
 
     public <T> T getComponent(final EcsMapping<T> mapping) {
-        checkMapping(mapping);
+        checkObjectMapping(mapping);
         return mapping.getType().cast(getComponent(mapping.getId()));
     }
 
@@ -77,32 +112,81 @@ public final class EcsEntity {
 
     void setComponent(final int id, final Object component) {
         Objects.requireNonNull(component, "component");
-        if (!getBitSet().setIfCleared(id)) {
+        addComponent(id, component);
+    }
+
+    void addComponent(final int id, final Object component) {
+        if (hasComponent(id)) {
             throw new IllegalArgumentException("component already set: " + id);
         }
-        if (id >= components.length) {
-            components = Arrays.copyOf(components, (id + 1) * 3 / 2);
+        if (isDeferred()) {
+            getEngine().getCommandBuffer().setComponent(getHandle(), id, component);
+            return;
         }
-        components[id] = component;
-        getOnComponentAdded().dispatchMessage(this);
+        final EcsArchetype source = archetype;
+        putComponent(id, component);
+        componentChanged(source, id);
     }
 
-    public <T> void setComponent(final EcsMapping<T> mapping, final T component) {
+    public <T> T getMutableComponent(final EcsMapping<T> mapping) {
+        final T result = getComponent(mapping);
+        markChanged(mapping.getId());
+        return result;
+    }
+
+    public <T> T getMutableComponent(final Class<T> type) {
+        return getMutableComponent(getEngine().getMapping(type));
+    }
+
+    void markChanged(final int id) {
+        if (!hasComponent(id)) {
+            throw new IllegalArgumentException("component not set: " + id);
+        }
+        getEngine().trackChanged(this, id);
+    }
+
+    public void markChanged(final EcsMapping<?> mapping) {
         checkMapping(mapping);
+        markChanged(mapping.getId());
+    }
+
+    public void markChanged(final Class<?> type) {
+        markChanged(getEngine().getMapping(type));
+    }
+
+    public boolean isAddedSince(final EcsMapping<?> mapping, final int tick) {
+        return getChangeTracker(mapping).getAddedTick(id) - tick > 0 && hasComponent(mapping.getId());
+    }
+
+    public boolean isChangedSince(final EcsMapping<?> mapping, final int tick) {
+        return getChangeTracker(mapping).getChangedTick(id) - tick > 0 && hasComponent(mapping.getId());
+    }
+
+    public <T> void setComponent(final EcsMapping<T> mapping, final T component) {
+        checkObjectMapping(mapping);
         setComponent(mapping.getId(), component);
     }
 
     public void setComponent(final Object component) {
         Objects.requireNonNull(component, "component");
-        setComponent(getEngine().getMapping(component.getClass()).getId(), component);
+        final EcsMapping<?> mapping = getEngine().getMapping(component.getClass());
+        checkObjectMapping(mapping);
+        setComponent(mapping.getId(), component);
     }
 
     public void clearComponent(final int id) {
-        if (!getBitSet().clearIfSet(id)) {
+        if (isDeferred()) {
+            if (!hasComponent(id)) {
+                throw new IllegalArgumentException("component not set: " + id);
+            }
+            getEngine().getCommandBuffer().clearComponent(getHandle(), id);
+            return;
+        }
+        final EcsArchetype source = archetype;
+        if (!removeComponent(id)) {
             throw new IllegalArgumentException("component not set: " + id);
         }
-        components[id] = null;
-        getOnComponentRemoved().dispatchMessage(this);
+        componentChanged(source, id);
     }
 
     public void clearComponent(final EcsMapping<?> mapping) {
@@ -118,7 +202,14 @@ public final class EcsEntity {
         getEngine().removeEntity(this);
     }
 
+    int getIndexCount() {
+        return indexes.length;
+    }
+
     int getIndex(final int id) {
+        if (id == 0) {
+            return index;
+        }
         return (id < indexes.length ? indexes[id] : -1);
     }
 
@@ -126,6 +217,10 @@ public final class EcsEntity {
         if (index < 0) {
             throw new IllegalArgumentException("negative index: " + index);
         }
+        if (id == 0) {
+            this.index = index;
+            return;
+        }
         final int length = indexes.length;
         if (id >= length) {
             final int newLength = (id + 1) * 3 / 2;
@@ -136,15 +231,185 @@ public final class EcsEntity {
     }
 
     void clearIndex(final int id) {
-        if (id < indexes.length) {
+        if (id == 0) {
+            index = -1;
+        } else if (id < indexes.length) {
             indexes[id] = -1;
         }
     }
 
+    EcsArchetype getArchetype() {
+        return archetype;
+    }
+
+    EcsChunk getChunk() {
+        return chunk;
+    }
+
+    int getRow() {
+        return row;
+    }
+
+    void setRow(final int row) {
+        this.row = row;
+        chunk = archetype.getChunk(row >> EcsArchetype.CHUNK_SHIFT);
+    }
+
+    void store(final EcsArchetype target) {
+        final int targetRow = target.addEntity(this);
+        final EcsChunk targetChunk = target.getChunk(targetRow >> EcsArchetype.CHUNK_SHIFT);
+        final int targetIndex = targetRow & EcsArchetype.CHUNK_MASK;
+        for (final int componentId : target.getComponentIds()) {
+            final EcsValueMapping valueMapping = target.getValueMapping(componentId);
+            if (valueMapping != null) {
+                valueMapping.copy(valueMapping.getPage(id), id & EcsValueMapping.PAGE_MASK,
+                        targetChunk.getValues(componentId), targetIndex);
+            } else {
+                targetChunk.set(componentId, targetIndex, components[componentId]);
+            }
+        }
+        archetype = target;
+        chunk = targetChunk;
+        row = targetRow;
+        bitSet = null;
+        components = null;
+    }
+
+    void unstore() {
+        final int[] componentIds = archetype.getComponentIds();
+        final int slot = row & EcsArchetype.CHUNK_MASK;
+        bitSet = archetype.getBitSet().copy();
+        components = (componentIds.length > 0 ? new Object[componentIds[componentIds.length - 1] + 1]
+                : NO_COMPONENTS);
+        for (final int componentId : componentIds) {
+            final EcsValueMapping valueMapping = archetype.getValueMapping(componentId);
+            if (valueMapping != null) {
+                valueMapping.copy(chunk.getValues(componentId), slot, valueMapping.getPage(id),
+                        id & EcsValueMapping.PAGE_MASK);
+            } else {
+                components[componentId] = chunk.get(componentId, slot);
+            }
+        }
+        archetype.removeEntity(row);
+        archetype = null;
+        chunk = null;
+        row = -1;
+    }
+
+    void initialize(final EcsBitSet bitSet, final int[] componentIds, final Object[] components) {
+        final EcsBitSet target = getBitSet();
+        for (int word = 0; word < bitSet.getWordCount(); word++) {
+            target.setWord(word, bitSet.getWord(word));
+        }
+        int maxComponentId = -1;
+        for (final int componentId : componentIds) {
+            maxComponentId = Math.max(maxComponentId, componentId);
+        }
+        ensureComponentCapacity(maxComponentId);
+        for (int index = componentIds.length; --index >= 0; ) {
+            final int componentId = componentIds[index];
+            this.components[componentId] = components[index];
+            getEngine().trackAdded(this, componentId);
+        }
+        getEngine().getMetrics().componentsAdded(componentIds.length);
+    }
+
+    boolean putComponent(final int id, final Object component) {
+        if (archetype != null) {
+            return putStoredComponent(id, component);
+        }
+        if (bitSet.get(id)) {
+            components[id] = component;
+            getEngine().trackChanged(this, id);
+            return false;
+        }
+        bitSet.set(id);
+        getEngine().getMetrics().componentAdded();
+        getEngine().trackAdded(this, id);
+        ensureComponentCapacity(id);
+        components[id] = component;
+        return true;
+    }
+
+    boolean removeComponent(final int id) {
+        if (archetype != null) {
+            if (!archetype.getBitSet().get(id)) {
+                return false;
+            }
+        } else if (!bitSet.clearIfSet(id)) {
+            return false;
+        }
+        getEngine().getMetrics().componentRemoved();
+        getEngine().trackRemoved(this, id);
+        if (archetype != null) {
+            moveTo(archetype.withoutComponent(id));
+        } else {
+            components[id] = null;
+        }
+        return true;
+    }
+
+    boolean isDeferred() {
+        return getEngine().isDeferring() && getEngine().hasEntity(this);
+    }
+
+    private void componentChanged(final EcsArchetype source, final int id) {
+        if (source != null) {
+            getEngine().archetypeChanged(this, source);
+        } else {
+            getEngine().componentChanged(this, id);
+        }
+    }
+
+    private boolean putStoredComponent(final int id, final Object component) {
+        final boolean added = !archetype.getBitSet().get(id);
+        if (added) {
+            getEngine().getMetrics().componentAdded();
+            getEngine().trackAdded(this, id);
+            moveTo(archetype.withComponent(id));
+        } else {
+            getEngine().trackChanged(this, id);
+        }
+        if (archetype.getValueMapping(id) == null) {
+            chunk.set(id, row & EcsArchetype.CHUNK_MASK, component);
+        }
+        return added;
+    }
+
+    private void moveTo(final EcsArchetype target) {
+        final int targetRow = target.addEntity(this);
+        archetype.copyTo(row, target, targetRow);
+        archetype.removeEntity(row);
+        archetype = target;
+        setRow(targetRow);
+    }
+
+    private void ensureComponentCapacity(final int id) {
+        if (id >= components.length) {
+            components = Arrays.copyOf(components, (id + 1) * 3 / 2);
+        }
+    }
+
     private void checkMapping(final EcsMapping<?> mapping) {
         Objects.requireNonNull(mapping, "mapping");
         if (mapping.getEngine() != getEngine()) {
             throw new IllegalArgumentException("engine mismatch");
         }
     }
+
+    private EcsChangeTracker getChangeTracker(final EcsMapping<?> mapping) {
+        checkMapping(mapping);
+        final EcsChangeTracker result = getEngine().getChangeTracker(mapping.getId());
+        if (result == null) {
+            throw new IllegalStateException("changes not tracked: " + mapping.getType().getName());
+        }
+        return result;
+    }
+
+    private void checkObjectMapping(final EcsMapping<?> mapping) {
+        checkMapping(mapping);
+        if (mapping.getValueMapping() != null) {
+            throw new IllegalArgumentException("component is value mapped: " + mapping.getType().getName());
+        }
+    }
 }
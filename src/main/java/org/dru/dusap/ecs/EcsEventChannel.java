@@ -0,0 +1,82 @@
+package org.dru.dusap.ecs;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+public final class EcsEventChannel<E> {
+    private final EcsEngine engine;
+    private final Class<E> type;
+    private Object[] writeEvents;
+    private int writeCount;
+    private Object[] readEvents;
+    private int readCount;
+
+    EcsEventChannel(final EcsEngine engine, final Class<E> type) {
+        this.engine = engine;
+        this.type = type;
+        writeEvents = new Object[0];
+        writeCount = 0;
+        readEvents = new Object[0];
+        readCount = 0;
+    }
+
+    public EcsEngine getEngine() {
+        return engine;
+    }
+
+    public Class<E> getType() {
+        return type;
+    }
+
+    public void publish(final E event) {
+        Objects.requireNonNull(event, "event");
+        synchronized (this) {
+            if (writeCount >= writeEvents.length) {
+                writeEvents = Arrays.copyOf(writeEvents, (writeCount + 1) * 3 / 2);
+            }
+            writeEvents[writeCount++] = event;
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return writeCount;
+    }
+
+    public int getEventCount() {
+        return readCount;
+    }
+
+    public E getEvent(final int index) {
+        if (index < 0 || index >= readCount) {
+            throw new IndexOutOfBoundsException("index out of range: " + index);
+        }
+        return type.cast(readEvents[index]);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(final Consumer<? super E> action) {
+        Objects.requireNonNull(action, "action");
+        final Object[] events = readEvents;
+        final int count = readCount;
+        for (int index = 0; index < count; index++) {
+            action.accept((E) events[index]);
+        }
+    }
+
+    synchronized void swap() {
+        final Object[] events = readEvents;
+        Arrays.fill(events, 0, readCount, null);
+        readEvents = writeEvents;
+        readCount = writeCount;
+        writeEvents = events;
+        writeCount = 0;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(readEvents, 0, readCount, null);
+        Arrays.fill(writeEvents, 0, writeCount, null);
+        readCount = 0;
+        writeCount = 0;
+    }
+}
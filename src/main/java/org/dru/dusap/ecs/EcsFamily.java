@@ -1,32 +1,118 @@
 package org.dru.dusap.ecs;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 public final class EcsFamily extends EcsContainer implements Predicate<EcsEntity> {
-    private final Consumer<EcsEntity> onComponentAdded;
-    private final Consumer<EcsEntity> onComponentRemoved;
+    private final EcsEngine engine;
     private final EcsAspect aspect;
+    private final List<EcsArchetype> archetypes;
+    private EcsEntity[] snapshot;
+    private int refCount;
 
-    EcsFamily(final int id, final EcsAspect aspect) {
+    EcsFamily(final EcsEngine engine, final int id, final EcsAspect aspect, final EcsStorage storage) {
         super(id);
+        this.engine = engine;
         this.aspect = aspect;
-        onComponentAdded = this::componentAdded;
-        onComponentRemoved = this::componentRemoved;
+        archetypes = (storage == EcsStorage.ARCHETYPE ? new CopyOnWriteArrayList<>() : null);
+        snapshot = new EcsEntity[0];
+        refCount = 0;
     }
 
     @Override
-    void addEntity(final EcsEntity entity) {
-        super.addEntity(entity);
-        entity.getOnComponentAdded().addConsumer(onComponentAdded);
-        entity.getOnComponentRemoved().addConsumer(onComponentRemoved);
+    public void forEach(final Consumer<? super EcsEntity> action) {
+        if (archetypes == null) {
+            super.forEach(action);
+            return;
+        }
+        Objects.requireNonNull(action, "action");
+        if (engine.isDeferring()) {
+            for (final EcsArchetype archetype : archetypes) {
+                for (int chunkIndex = 0; chunkIndex < archetype.getChunkCount(); chunkIndex++) {
+                    final EcsEntity[] entities = archetype.getChunk(chunkIndex).getEntities();
+                    final int size = archetype.getChunkSize(chunkIndex);
+                    for (int index = 0; index < size; index++) {
+                        action.accept(entities[index]);
+                    }
+                }
+            }
+            return;
+        }
+        final int entityCount = getEntityCount();
+        EcsEntity[] entities = snapshot;
+        snapshot = null;
+        if (entities == null || entities.length < entityCount) {
+            entities = new EcsEntity[entityCount];
+        }
+        int count = 0;
+        for (final EcsArchetype archetype : archetypes) {
+            for (int chunkIndex = 0; chunkIndex < archetype.getChunkCount(); chunkIndex++) {
+                final int size = archetype.getChunkSize(chunkIndex);
+                System.arraycopy(archetype.getChunk(chunkIndex).getEntities(), 0, entities, count, size);
+                count += size;
+            }
+        }
+        try {
+            for (int index = 0; index < count; index++) {
+                final EcsEntity entity = entities[index];
+                if (hasEntity(entity)) {
+                    action.accept(entity);
+                }
+            }
+        } finally {
+            Arrays.fill(entities, 0, count, null);
+            snapshot = entities;
+        }
+    }
+
+
+    @Override
+    public int getEntityCount() {
+        if (archetypes == null) {
+            return super.getEntityCount();
+        }
+        int entityCount = 0;
+        for (final EcsArchetype archetype : archetypes) {
+            entityCount += archetype.getEntityCount();
+        }
+        return entityCount;
+    }
+
+    @Override
+    public Spliterator<EcsEntity> spliterator(final int batchSize) {
+        if (archetypes == null) {
+            return super.spliterator(batchSize);
+        }
+        int chunkCount = 0;
+        for (final EcsArchetype archetype : archetypes) {
+            chunkCount += archetype.getChunkCount();
+        }
+        final EcsEntity[][] segments = new EcsEntity[chunkCount][];
+        final int[] offsets = new int[chunkCount + 1];
+        int segment = 0;
+        for (final EcsArchetype archetype : archetypes) {
+            for (int chunkIndex = 0; chunkIndex < archetype.getChunkCount() && segment < chunkCount; chunkIndex++) {
+                segments[segment] = archetype.getChunk(chunkIndex).getEntities();
+                offsets[segment + 1] = offsets[segment] + archetype.getChunkSize(chunkIndex);
+                segment++;
+            }
+        }
+        return new EcsSpliterator(segments, offsets, batchSize);
     }
 
     @Override
-    void removeEntity(final EcsEntity entity) {
-        super.removeEntity(entity);
-        entity.getOnComponentAdded().removeConsumer(onComponentAdded);
-        entity.getOnComponentRemoved().removeConsumer(onComponentRemoved);
+    boolean hasEntity(final EcsEntity entity) {
+        if (archetypes == null) {
+            return super.hasEntity(entity);
+        }
+        Objects.requireNonNull(entity, "entity");
+        final EcsArchetype archetype = entity.getArchetype();
+        return archetype != null && archetype.getFamilies().contains(this);
     }
 
     @Override
@@ -34,15 +120,44 @@ public final class EcsFamily extends EcsContainer implements Predicate<EcsEntity
         return aspect.test(entity);
     }
 
-    private void componentAdded(final EcsEntity entity) {
-        if (!hasEntity(entity) && test(entity)) {
+    EcsAspect getAspect() {
+        return aspect;
+    }
+
+    void update(final EcsEntity entity) {
+        if (hasEntity(entity)) {
+            if (!test(entity)) {
+                removeEntity(entity);
+            }
+        } else if (test(entity)) {
             addEntity(entity);
         }
     }
 
-    private void componentRemoved(final EcsEntity entity) {
-        if (hasEntity(entity) && !test(entity)) {
-            removeEntity(entity);
+    boolean test(final EcsArchetype archetype) {
+        return aspect.test(archetype.getBitSet());
+    }
+
+    List<EcsArchetype> getArchetypes() {
+        return archetypes;
+    }
+
+    void addArchetype(final EcsArchetype archetype) {
+        archetypes.add(archetype);
+    }
+
+    int getRefCount() {
+        return refCount;
+    }
+
+    int retain() {
+        return ++refCount;
+    }
+
+    int release() {
+        if (refCount == 0) {
+            throw new IllegalStateException("family not retained: " + getId());
         }
+        return --refCount;
     }
 }
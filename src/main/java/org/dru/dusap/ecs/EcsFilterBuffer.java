@@ -0,0 +1,63 @@
+package org.dru.dusap.ecs;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+final class EcsFilterBuffer implements LongConsumer {
+    private long[] handles;
+    private int handleCount;
+    private EcsEntity[] entities;
+    private int entityCount;
+
+    EcsFilterBuffer() {
+        handles = new long[0];
+        handleCount = 0;
+        entities = new EcsEntity[0];
+        entityCount = 0;
+    }
+
+    @Override
+    public void accept(final long handle) {
+        if (handleCount >= handles.length) {
+            handles = Arrays.copyOf(handles, (handleCount + 1) * 3 / 2);
+        }
+        handles[handleCount++] = handle;
+    }
+
+    void clear() {
+        Arrays.fill(entities, 0, entityCount, null);
+        handleCount = 0;
+        entityCount = 0;
+    }
+
+    int sortHandles() {
+        Arrays.sort(handles, 0, handleCount);
+        int count = 0;
+        for (int index = 0; index < handleCount; index++) {
+            if (count == 0 || handles[count - 1] != handles[index]) {
+                handles[count++] = handles[index];
+            }
+        }
+        handleCount = count;
+        return count;
+    }
+
+    long getHandle(final int index) {
+        return handles[index];
+    }
+
+    void addEntity(final EcsEntity entity) {
+        if (entityCount >= entities.length) {
+            entities = Arrays.copyOf(entities, (entityCount + 1) * 3 / 2);
+        }
+        entities[entityCount++] = entity;
+    }
+
+    EcsEntity[] getEntities() {
+        return entities;
+    }
+
+    int getEntityCount() {
+        return entityCount;
+    }
+}
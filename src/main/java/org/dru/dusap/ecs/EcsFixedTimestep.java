@@ -0,0 +1,62 @@
+package org.dru.dusap.ecs;
+
+final class EcsFixedTimestep {
+    private final long step;
+    private final int maxSteps;
+    private final EcsStepPolicy policy;
+    private long lastTime;
+    private long accumulator;
+    private long simulationTime;
+    private boolean started;
+
+    EcsFixedTimestep(final long step, final int maxSteps, final EcsStepPolicy policy) {
+        if (step < 1L) {
+            throw new IllegalArgumentException("step has to be 1 or greater: " + step);
+        }
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("maxSteps has to be 1 or greater: " + maxSteps);
+        }
+        this.step = step;
+        this.maxSteps = maxSteps;
+        this.policy = policy;
+    }
+
+    long getStep() {
+        return step;
+    }
+
+    int getMaxSteps() {
+        return maxSteps;
+    }
+
+    EcsStepPolicy getPolicy() {
+        return policy;
+    }
+
+    int steps(final long now) {
+        if (!started) {
+            started = true;
+            lastTime = now;
+            simulationTime = now;
+            return 0;
+        }
+        accumulator += Math.max(0L, now - lastTime);
+        lastTime = now;
+        final long due = accumulator / step;
+        final int steps = (int) Math.min(due, maxSteps);
+        accumulator -= steps * step;
+        if (policy == EcsStepPolicy.DROP && due > steps) {
+            accumulator %= step;
+        }
+        return steps;
+    }
+
+    long nextTime() {
+        simulationTime += step;
+        return simulationTime;
+    }
+
+    double getInterpolation() {
+        return Math.min(1.0, (double) accumulator / step);
+    }
+}
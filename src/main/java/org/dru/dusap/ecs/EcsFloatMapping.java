@@ -0,0 +1,68 @@
+package org.dru.dusap.ecs;
+
+import java.nio.ByteBuffer;
+
+public final class EcsFloatMapping extends EcsValueMapping {
+    EcsFloatMapping(final EcsMapping<?> mapping, final EcsMemory memory) {
+        super(mapping, memory);
+    }
+
+    public float get(final EcsEntity entity) {
+        return get(column(entity), slot(entity));
+    }
+
+    public void set(final EcsEntity entity, final float value) {
+        if (defer(entity, Float.floatToRawIntBits(value))) {
+            return;
+        }
+        set(attach(entity), slot(entity), value);
+        changed(entity);
+    }
+
+    @Override
+    Object newColumn(final int capacity) {
+        return (getMemory() == EcsMemory.HEAP ? new float[capacity] : allocate(capacity << 2));
+    }
+
+    @Override
+    void reset(final Object column, final int index) {
+        set(column, index, 0f);
+    }
+
+    @Override
+    void load(final Object column, final int index, final long value) {
+        set(column, index, Float.intBitsToFloat((int) value));
+    }
+
+    @Override
+    int getValueSize() {
+        return Float.BYTES;
+    }
+
+    @Override
+    void copy(final Object source, final int sourceIndex, final Object target, final int targetIndex) {
+        set(target, targetIndex, get(source, sourceIndex));
+    }
+
+    @Override
+    void write(final Object column, final int index, final ByteBuffer target) {
+        target.putFloat(get(column, index));
+    }
+
+    @Override
+    void read(final Object column, final int index, final ByteBuffer source) {
+        set(column, index, source.getFloat());
+    }
+
+    private static float get(final Object column, final int index) {
+        return (column instanceof float[] ? ((float[]) column)[index] : ((ByteBuffer) column).getFloat(index << 2));
+    }
+
+    private static void set(final Object column, final int index, final float value) {
+        if (column instanceof float[]) {
+            ((float[]) column)[index] = value;
+        } else {
+            ((ByteBuffer) column).putFloat(index << 2, value);
+        }
+    }
+}
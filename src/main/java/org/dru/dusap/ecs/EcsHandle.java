@@ -0,0 +1,27 @@
+package org.dru.dusap.ecs;
+
+public final class EcsHandle {
+    public static final long NONE = -1L;
+
+    public static long of(final int index, final int generation) {
+        if (index < 0) {
+            throw new IllegalArgumentException("negative index: " + index);
+        }
+        return ((long) generation << 32) | index;
+    }
+
+    public static int index(final long handle) {
+        return (int) handle;
+    }
+
+    public static int generation(final long handle) {
+        return (int) (handle >>> 32);
+    }
+
+    public static String toString(final long handle) {
+        return (handle == NONE ? "none" : index(handle) + "v" + generation(handle));
+    }
+
+    private EcsHandle() {
+    }
+}
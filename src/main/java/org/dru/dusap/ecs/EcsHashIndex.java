@@ -0,0 +1,86 @@
+package org.dru.dusap.ecs;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Finds entities by a {@code long} key derived from one component. During {@link EcsEngine#update()} lookups answer
+ * from the keys captured when the previous update ended; an entity that gains, loses or changes its key in the
+ * current tick is found under its new key only after this update completes.
+ */
+public final class EcsHashIndex<T> extends EcsComponentIndex<T> {
+    private final ToLongFunction<? super T> keyFunction;
+    private final EcsBucketTable buckets;
+
+    EcsHashIndex(final EcsEngine engine, final EcsMapping<T> mapping, final EcsFamily family,
+                 final ToLongFunction<? super T> keyFunction) {
+        super(engine, mapping, family);
+        this.keyFunction = keyFunction;
+        buckets = new EcsBucketTable();
+    }
+
+    public boolean contains(final long key) {
+        refreshIfIdle();
+        return buckets.find(key) != -1;
+    }
+
+    public int count(final long key) {
+        refreshIfIdle();
+        int count = 0;
+        for (int id = buckets.find(key); id != -1; id = buckets.getNext(id)) {
+            count++;
+        }
+        return count;
+    }
+
+    public EcsEntity getFirst(final long key) {
+        refreshIfIdle();
+        final int id = buckets.find(key);
+        return (id != -1 ? getEntity(id) : null);
+    }
+
+    public int get(final long key, final Consumer<EcsEntity> action) {
+        Objects.requireNonNull(action, "action");
+        refreshIfIdle();
+        int count = 0;
+        for (int id = buckets.find(key); id != -1; id = buckets.getNext(id)) {
+            action.accept(getEntity(id));
+            count++;
+        }
+        return count;
+    }
+
+    public int get(final long key, final EcsEntity[] result) {
+        Objects.requireNonNull(result, "result");
+        refreshIfIdle();
+        int count = 0;
+        for (int id = buckets.find(key); id != -1; id = buckets.getNext(id)) {
+            if (count < result.length) {
+                result[count] = getEntity(id);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    void added(final int id, final T component) {
+        buckets.add(id, keyFunction.applyAsLong(component));
+    }
+
+    @Override
+    void changed(final int id, final T component) {
+        buckets.move(id, keyFunction.applyAsLong(component));
+    }
+
+    @Override
+    void removed(final int id) {
+        buckets.remove(id);
+    }
+
+    @Override
+    void cleared() {
+        buckets.clear();
+    }
+}
@@ -0,0 +1,104 @@
+package org.dru.dusap.ecs;
+
+import java.util.Arrays;
+
+public final class EcsHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+    private final long[] buckets;
+    private long count;
+    private long total;
+    private long max;
+
+    EcsHistogram() {
+        buckets = new long[BUCKET_COUNT];
+    }
+
+    private EcsHistogram(final EcsHistogram histogram) {
+        buckets = histogram.buckets.clone();
+        count = histogram.count;
+        total = histogram.total;
+        max = histogram.max;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    public synchronized long getMean() {
+        return (count != 0L ? total / count : 0L);
+    }
+
+    public synchronized long getPercentile(final double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("percentile out of range: " + percentile);
+        }
+        if (count == 0L) {
+            return 0L;
+        }
+        final long rank = Math.max(1L, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0L;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            final long bucketCount = buckets[bucket];
+            if (seen + bucketCount >= rank) {
+                final long width = getWidth(bucket);
+                final double fraction = (double) (rank - seen) / bucketCount;
+                return Math.min(max, getLowerBound(bucket) + (long) ((width - 1L) * fraction));
+            }
+            seen += bucketCount;
+        }
+        return max;
+    }
+
+    synchronized void record(final long value) {
+        final long clamped = Math.max(0L, value);
+        buckets[getBucket(clamped)]++;
+        count++;
+        total += clamped;
+        if (clamped > max) {
+            max = clamped;
+        }
+    }
+
+    synchronized void reset() {
+        Arrays.fill(buckets, 0L);
+        count = 0L;
+        total = 0L;
+        max = 0L;
+    }
+
+    synchronized EcsHistogram copy() {
+        return new EcsHistogram(this);
+    }
+
+    static int getBucket(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & SUB_BUCKET_MASK);
+    }
+
+    static long getLowerBound(final int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        final int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+        return (long) (SUB_BUCKET_COUNT + (bucket & SUB_BUCKET_MASK)) << shift;
+    }
+
+    static long getWidth(final int bucket) {
+        return (bucket < SUB_BUCKET_COUNT ? 1L : 1L << ((bucket >> SUB_BUCKET_BITS) - 1));
+    }
+}
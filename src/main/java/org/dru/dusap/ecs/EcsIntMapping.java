@@ -0,0 +1,68 @@
+package org.dru.dusap.ecs;
+
+import java.nio.ByteBuffer;
+
+public final class EcsIntMapping extends EcsValueMapping {
+    EcsIntMapping(final EcsMapping<?> mapping, final EcsMemory memory) {
+        super(mapping, memory);
+    }
+
+    public int get(final EcsEntity entity) {
+        return get(column(entity), slot(entity));
+    }
+
+    public void set(final EcsEntity entity, final int value) {
+        if (defer(entity, value)) {
+            return;
+        }
+        set(attach(entity), slot(entity), value);
+        changed(entity);
+    }
+
+    @Override
+    Object newColumn(final int capacity) {
+        return (getMemory() == EcsMemory.HEAP ? new int[capacity] : allocate(capacity << 2));
+    }
+
+    @Override
+    void reset(final Object column, final int index) {
+        set(column, index, 0);
+    }
+
+    @Override
+    void load(final Object column, final int index, final long value) {
+        set(column, index, (int) value);
+    }
+
+    @Override
+    int getValueSize() {
+        return Integer.BYTES;
+    }
+
+    @Override
+    void copy(final Object source, final int sourceIndex, final Object target, final int targetIndex) {
+        set(target, targetIndex, get(source, sourceIndex));
+    }
+
+    @Override
+    void write(final Object column, final int index, final ByteBuffer target) {
+        target.putInt(get(column, index));
+    }
+
+    @Override
+    void read(final Object column, final int index, final ByteBuffer source) {
+        set(column, index, source.getInt());
+    }
+
+    private static int get(final Object column, final int index) {
+        return (column instanceof int[] ? ((int[]) column)[index] : ((ByteBuffer) column).getInt(index << 2));
+    }
+
+    private static void set(final Object column, final int index, final int value) {
+        if (column instanceof int[]) {
+            ((int[]) column)[index] = value;
+        } else {
+            ((ByteBuffer) column).putInt(index << 2, value);
+        }
+    }
+}
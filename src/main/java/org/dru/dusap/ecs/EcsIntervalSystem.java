@@ -1,32 +1,60 @@
 package org.dru.dusap.ecs;
 
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
 public abstract class EcsIntervalSystem extends EcsSystem {
     private final long interval;
     private long when;
+    private boolean due;
 
     protected EcsIntervalSystem(final long interval) {
+        this(interval, TimeUnit.MILLISECONDS);
+    }
+
+    protected EcsIntervalSystem(final long interval, final TimeUnit unit) {
+        Objects.requireNonNull(unit, "unit");
         if (interval < 1L) {
             throw new IllegalArgumentException("interval has to be 1 or greater: " + interval);
         }
-        this.interval = interval;
-        when = -1L;
+        this.interval = unit.toNanos(interval);
+        when = Long.MIN_VALUE;
     }
 
     @Override
     protected final void update() {
-        final long now = System.currentTimeMillis();
-        if (when == -1L) {
-            when = now;
-        }
-        if (now >= when) {
-            if (now < when + interval) {
-                when = when + interval;
-            } else {
-                when = now + interval;
-            }
-            updateNow();
-        }
+        updateNow();
     }
 
     protected abstract void updateNow();
+
+    @Override
+    final boolean isIdle() {
+        return !due;
+    }
+
+    final long getWhen() {
+        return when;
+    }
+
+    final boolean isDue(final long now) {
+        return when == Long.MIN_VALUE || now >= when;
+    }
+
+    final void setDue(final boolean due) {
+        this.due = due;
+    }
+
+    final void schedule(final long now) {
+        if (when == Long.MIN_VALUE || now >= when + interval) {
+            when = now + interval;
+        } else {
+            when = when + interval;
+        }
+    }
+
+    final void unschedule() {
+        when = Long.MIN_VALUE;
+        due = false;
+    }
 }
@@ -0,0 +1,76 @@
+package org.dru.dusap.ecs;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+final class EcsJfrEvents {
+    static void systemUpdated(final EcsSystem system, final long nanos) {
+        final SystemUpdateEvent event = new SystemUpdateEvent();
+        if (event.shouldCommit()) {
+            event.system = system.getClass().getName();
+            event.updateTime = nanos;
+            event.commit();
+        }
+    }
+
+    static void tickCompleted(final long tick, final long nanos, final long entitiesCreated,
+                              final long entitiesDestroyed, final long componentsAdded,
+                              final long componentsRemoved, final int pendingCommands) {
+        final TickEvent event = new TickEvent();
+        if (event.shouldCommit()) {
+            event.tick = tick;
+            event.tickTime = nanos;
+            event.entitiesCreated = entitiesCreated;
+            event.entitiesDestroyed = entitiesDestroyed;
+            event.componentsAdded = componentsAdded;
+            event.componentsRemoved = componentsRemoved;
+            event.pendingCommands = pendingCommands;
+            event.commit();
+        }
+    }
+
+    @Name("org.dru.dusap.ecs.SystemUpdate")
+    @Label("ECS System Update")
+    @Category("DUSAP ECS")
+    static final class SystemUpdateEvent extends Event {
+        @Label("System")
+        String system;
+
+        @Label("Update Time")
+        @Timespan
+        long updateTime;
+    }
+
+    @Name("org.dru.dusap.ecs.Tick")
+    @Label("ECS Tick")
+    @Category("DUSAP ECS")
+    static final class TickEvent extends Event {
+        @Label("Tick")
+        long tick;
+
+        @Label("Tick Time")
+        @Timespan
+        long tickTime;
+
+        @Label("Entities Created")
+        long entitiesCreated;
+
+        @Label("Entities Destroyed")
+        long entitiesDestroyed;
+
+        @Label("Components Added")
+        long componentsAdded;
+
+        @Label("Components Removed")
+        long componentsRemoved;
+
+        @Label("Pending Commands")
+        int pendingCommands;
+    }
+
+    private EcsJfrEvents() {
+    }
+}
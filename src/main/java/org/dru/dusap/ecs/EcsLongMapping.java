@@ -0,0 +1,68 @@
+package org.dru.dusap.ecs;
+
+import java.nio.ByteBuffer;
+
+public final class EcsLongMapping extends EcsValueMapping {
+    EcsLongMapping(final EcsMapping<?> mapping, final EcsMemory memory) {
+        super(mapping, memory);
+    }
+
+    public long get(final EcsEntity entity) {
+        return get(column(entity), slot(entity));
+    }
+
+    public void set(final EcsEntity entity, final long value) {
+        if (defer(entity, value)) {
+            return;
+        }
+        set(attach(entity), slot(entity), value);
+        changed(entity);
+    }
+
+    @Override
+    Object newColumn(final int capacity) {
+        return (getMemory() == EcsMemory.HEAP ? new long[capacity] : allocate(capacity << 3));
+    }
+
+    @Override
+    void reset(final Object column, final int index) {
+        set(column, index, 0L);
+    }
+
+    @Override
+    void load(final Object column, final int index, final long value) {
+        set(column, index, value);
+    }
+
+    @Override
+    int getValueSize() {
+        return Long.BYTES;
+    }
+
+    @Override
+    void copy(final Object source, final int sourceIndex, final Object target, final int targetIndex) {
+        set(target, targetIndex, get(source, sourceIndex));
+    }
+
+    @Override
+    void write(final Object column, final int index, final ByteBuffer target) {
+        target.putLong(get(column, index));
+    }
+
+    @Override
+    void read(final Object column, final int index, final ByteBuffer source) {
+        set(column, index, source.getLong());
+    }
+
+    private static long get(final Object column, final int index) {
+        return (column instanceof long[] ? ((long[]) column)[index] : ((ByteBuffer) column).getLong(index << 3));
+    }
+
+    private static void set(final Object column, final int index, final long value) {
+        if (column instanceof long[]) {
+            ((long[]) column)[index] = value;
+        } else {
+            ((ByteBuffer) column).putLong(index << 3, value);
+        }
+    }
+}
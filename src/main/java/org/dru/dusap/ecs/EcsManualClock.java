@@ -0,0 +1,37 @@
+package org.dru.dusap.ecs;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+public final class EcsManualClock implements EcsClock {
+    private volatile long nanoTime;
+
+    public EcsManualClock() {
+        this(0L);
+    }
+
+    public EcsManualClock(final long nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public long nanoTime() {
+        return nanoTime;
+    }
+
+    public void setNanoTime(final long nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    public void advance(final long nanos) {
+        if (nanos < 0L) {
+            throw new IllegalArgumentException("negative nanos: " + nanos);
+        }
+        nanoTime += nanos;
+    }
+
+    public void advance(final long duration, final TimeUnit unit) {
+        Objects.requireNonNull(unit, "unit");
+        advance(unit.toNanos(duration));
+    }
+}
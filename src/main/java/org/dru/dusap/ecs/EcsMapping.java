@@ -6,6 +6,8 @@ public final class EcsMapping<T> {
     private final EcsEngine engine;
     private final int id;
     private final Class<T> type;
+    private EcsValueMapping valueMapping;
+    private volatile EcsCodec<T> codec;
 
     EcsMapping(final EcsEngine engine, final int id, final Class<T> type) {
         this.engine = engine;
@@ -24,4 +26,23 @@ public final class EcsMapping<T> {
     public Class<T> getType() {
         return type;
     }
+
+    public EcsCodec<T> getCodec() {
+        return codec;
+    }
+
+    public void setCodec(final EcsCodec<T> codec) {
+        if (valueMapping != null) {
+            throw new IllegalStateException("component is value mapped: " + type.getName());
+        }
+        this.codec = codec;
+    }
+
+    EcsValueMapping getValueMapping() {
+        return valueMapping;
+    }
+
+    void setValueMapping(final EcsValueMapping valueMapping) {
+        this.valueMapping = valueMapping;
+    }
 }
@@ -0,0 +1,28 @@
+package org.dru.dusap.ecs;
+
+abstract class EcsMatcher {
+    static EcsMatcher compile(final EcsBitSet allOf, final EcsBitSet anyOf, final EcsBitSet noneOf) {
+        final int wordCount = Math.max(wordCount(allOf), Math.max(wordCount(anyOf), wordCount(noneOf)));
+        boolean singleWord = true;
+        for (int index = 1; index < wordCount; index++) {
+            if (word(allOf, index) != 0L || word(anyOf, index) != 0L || word(noneOf, index) != 0L) {
+                singleWord = false;
+                break;
+            }
+        }
+        if (singleWord) {
+            return new EcsWordMatcher(word(allOf, 0), word(anyOf, 0), word(noneOf, 0));
+        }
+        return new EcsSparseMatcher(allOf, anyOf, noneOf);
+    }
+
+    static int wordCount(final EcsBitSet bitSet) {
+        return (bitSet != null ? bitSet.getWordCount() : 0);
+    }
+
+    static long word(final EcsBitSet bitSet, final int index) {
+        return (bitSet != null && index < bitSet.getWordCount() ? bitSet.getWord(index) : 0L);
+    }
+
+    abstract boolean test(EcsBitSet bitSet);
+}
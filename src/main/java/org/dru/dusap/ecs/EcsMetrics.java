@@ -0,0 +1,151 @@
+package org.dru.dusap.ecs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class EcsMetrics {
+    private final EcsEngine engine;
+    private final AtomicLong entitiesCreated;
+    private final AtomicLong entitiesDestroyed;
+    private final AtomicLong componentsAdded;
+    private final AtomicLong componentsRemoved;
+    private final AtomicLong queriesLeaked;
+    private final EcsHistogram tickHistogram;
+    private volatile boolean enabled;
+    private volatile boolean jfrEnabled;
+    private final AtomicInteger pendingCommands;
+    private long tickCount;
+    private long lastTickNanos;
+    private long lastEntitiesCreated;
+    private long lastEntitiesDestroyed;
+    private long lastComponentsAdded;
+    private long lastComponentsRemoved;
+    private int lastPendingCommands;
+
+    EcsMetrics(final EcsEngine engine) {
+        this.engine = engine;
+        entitiesCreated = new AtomicLong();
+        entitiesDestroyed = new AtomicLong();
+        componentsAdded = new AtomicLong();
+        componentsRemoved = new AtomicLong();
+        queriesLeaked = new AtomicLong();
+        tickHistogram = new EcsHistogram();
+        pendingCommands = new AtomicInteger();
+        enabled = false;
+        jfrEnabled = false;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isJfrEnabled() {
+        return jfrEnabled;
+    }
+
+    public void setJfrEnabled(final boolean jfrEnabled) {
+        this.jfrEnabled = jfrEnabled;
+    }
+
+    public synchronized EcsMetricsSnapshot snapshot() {
+        final List<EcsSystemTiming> systemTimings = new ArrayList<>();
+        engine.forEachSystem(system -> systemTimings.add(new EcsSystemTiming(system.getClass(),
+                system.getFamily().getAspect(), system.getLastUpdateNanos(), system.getHistogram().copy())));
+        final Map<EcsAspect, Integer> familySizes = new HashMap<>();
+        engine.forEachFamily(family -> familySizes.put(family.getAspect(), family.getEntityCount()));
+        return new EcsMetricsSnapshot(tickCount, lastTickNanos, tickHistogram.copy(), lastEntitiesCreated,
+                lastEntitiesDestroyed, lastComponentsAdded, lastComponentsRemoved, lastPendingCommands,
+                queriesLeaked.get(), engine.getEntityCount(), Collections.unmodifiableList(systemTimings),
+                Collections.unmodifiableMap(familySizes));
+    }
+
+    public synchronized void reset() {
+        tickHistogram.reset();
+        engine.forEachSystem(system -> system.getHistogram().reset());
+        tickCount = 0L;
+        lastTickNanos = 0L;
+    }
+
+    void entityCreated() {
+        if (enabled) {
+            entitiesCreated.incrementAndGet();
+        }
+    }
+
+    void entityDestroyed() {
+        if (enabled) {
+            entitiesDestroyed.incrementAndGet();
+        }
+    }
+
+    void entitiesDestroyed(final int count) {
+        if (enabled) {
+            entitiesDestroyed.addAndGet(count);
+        }
+    }
+
+    void componentAdded() {
+        if (enabled) {
+            componentsAdded.incrementAndGet();
+        }
+    }
+
+    void entitiesCreated(final int count) {
+        if (enabled) {
+            entitiesCreated.addAndGet(count);
+        }
+    }
+
+    void componentsAdded(final int count) {
+        if (enabled) {
+            componentsAdded.addAndGet(count);
+        }
+    }
+
+    void componentRemoved() {
+        if (enabled) {
+            componentsRemoved.incrementAndGet();
+        }
+    }
+
+    void queryLeaked() {
+        queriesLeaked.incrementAndGet();
+    }
+
+    void commandsPending(final int count) {
+        if (enabled) {
+            pendingCommands.accumulateAndGet(count, Math::max);
+        }
+    }
+
+    void systemUpdated(final EcsSystem system, final long nanos) {
+        system.recordUpdate(nanos);
+        if (jfrEnabled) {
+            EcsJfrEvents.systemUpdated(system, nanos);
+        }
+    }
+
+    synchronized void tickCompleted(final long nanos) {
+        tickCount++;
+        lastTickNanos = nanos;
+        tickHistogram.record(nanos);
+        lastEntitiesCreated = entitiesCreated.getAndSet(0L);
+        lastEntitiesDestroyed = entitiesDestroyed.getAndSet(0L);
+        lastComponentsAdded = componentsAdded.getAndSet(0L);
+        lastComponentsRemoved = componentsRemoved.getAndSet(0L);
+        lastPendingCommands = pendingCommands.getAndSet(0);
+        if (jfrEnabled) {
+            EcsJfrEvents.tickCompleted(tickCount, nanos, lastEntitiesCreated, lastEntitiesDestroyed,
+                    lastComponentsAdded, lastComponentsRemoved, lastPendingCommands);
+        }
+    }
+}
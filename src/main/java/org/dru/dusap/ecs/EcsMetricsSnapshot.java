@@ -0,0 +1,86 @@
+package org.dru.dusap.ecs;
+
+import java.util.List;
+import java.util.Map;
+
+public final class EcsMetricsSnapshot {
+    private final long tickCount;
+    private final long lastTickNanos;
+    private final EcsHistogram tickHistogram;
+    private final long entitiesCreated;
+    private final long entitiesDestroyed;
+    private final long componentsAdded;
+    private final long componentsRemoved;
+    private final int pendingCommands;
+    private final long queriesLeaked;
+    private final int entityCount;
+    private final List<EcsSystemTiming> systemTimings;
+    private final Map<EcsAspect, Integer> familySizes;
+
+    EcsMetricsSnapshot(final long tickCount, final long lastTickNanos, final EcsHistogram tickHistogram,
+                       final long entitiesCreated, final long entitiesDestroyed, final long componentsAdded,
+                       final long componentsRemoved, final int pendingCommands, final long queriesLeaked,
+                       final int entityCount, final List<EcsSystemTiming> systemTimings,
+                       final Map<EcsAspect, Integer> familySizes) {
+        this.tickCount = tickCount;
+        this.lastTickNanos = lastTickNanos;
+        this.tickHistogram = tickHistogram;
+        this.entitiesCreated = entitiesCreated;
+        this.entitiesDestroyed = entitiesDestroyed;
+        this.componentsAdded = componentsAdded;
+        this.componentsRemoved = componentsRemoved;
+        this.pendingCommands = pendingCommands;
+        this.queriesLeaked = queriesLeaked;
+        this.entityCount = entityCount;
+        this.systemTimings = systemTimings;
+        this.familySizes = familySizes;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    public EcsHistogram getTickHistogram() {
+        return tickHistogram;
+    }
+
+    public long getEntitiesCreated() {
+        return entitiesCreated;
+    }
+
+    public long getEntitiesDestroyed() {
+        return entitiesDestroyed;
+    }
+
+    public long getComponentsAdded() {
+        return componentsAdded;
+    }
+
+    public long getComponentsRemoved() {
+        return componentsRemoved;
+    }
+
+    public int getPendingCommands() {
+        return pendingCommands;
+    }
+
+    public long getQueriesLeaked() {
+        return queriesLeaked;
+    }
+
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    public List<EcsSystemTiming> getSystemTimings() {
+        return systemTimings;
+    }
+
+    public Map<EcsAspect, Integer> getFamilySizes() {
+        return familySizes;
+    }
+}
@@ -0,0 +1,93 @@
+package org.dru.dusap.ecs;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+final class EcsMigration {
+    private final long handle;
+    private final int target;
+    private final Consumer<EcsEntity> onArrival;
+    private Class<?>[] types;
+    private Object[] components;
+    private int[] offsets;
+    private ByteBuffer values;
+    private int count;
+
+    EcsMigration(final long handle, final int target, final Consumer<EcsEntity> onArrival) {
+        this.handle = handle;
+        this.target = target;
+        this.onArrival = onArrival;
+        types = new Class<?>[0];
+        components = new Object[0];
+        offsets = new int[0];
+        values = null;
+        count = 0;
+    }
+
+    long getHandle() {
+        return handle;
+    }
+
+    int getTarget() {
+        return target;
+    }
+
+    Consumer<EcsEntity> getOnArrival() {
+        return onArrival;
+    }
+
+    ByteBuffer capture(final EcsEntity entity, final EcsMapping<?>[] mappings, final ByteBuffer scratch) {
+        final EcsBitSet bitSet = entity.getBitSet();
+        int valueBytes = 0;
+        for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+            final EcsValueMapping valueMapping = mappings[id].getValueMapping();
+            if (valueMapping != null) {
+                valueBytes += valueMapping.getValueSize();
+            }
+        }
+        values = (scratch.remaining() >= valueBytes ? scratch
+                : ByteBuffer.allocate(Math.max(valueBytes, scratch.capacity() * 2)));
+        for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+            if (count >= types.length) {
+                types = Arrays.copyOf(types, (count + 1) * 3 / 2);
+                components = Arrays.copyOf(components, types.length);
+                offsets = Arrays.copyOf(offsets, types.length);
+            }
+            final EcsMapping<?> mapping = mappings[id];
+            final EcsValueMapping valueMapping = mapping.getValueMapping();
+            types[count] = mapping.getType();
+            if (valueMapping != null) {
+                offsets[count] = values.position();
+                valueMapping.encode(entity, values);
+                components[count] = null;
+            } else {
+                offsets[count] = -1;
+                components[count] = entity.getComponent(id);
+            }
+            count++;
+        }
+        return values;
+    }
+
+    void restore(final EcsEntity entity) {
+        final EcsEngine engine = entity.getEngine();
+        final ByteBuffer buffer = values.duplicate();
+        for (int index = 0; index < count; index++) {
+            final EcsMapping<?> mapping = engine.getMapping(types[index]);
+            final EcsValueMapping valueMapping = mapping.getValueMapping();
+            if (offsets[index] != -1) {
+                if (valueMapping == null) {
+                    throw new IllegalStateException("value mapping not set: " + types[index].getName());
+                }
+                buffer.position(offsets[index]);
+                valueMapping.decode(entity, buffer);
+            } else {
+                if (valueMapping != null) {
+                    throw new IllegalStateException("component is value mapped: " + types[index].getName());
+                }
+                entity.setComponent(mapping.getId(), components[index]);
+            }
+        }
+    }
+}
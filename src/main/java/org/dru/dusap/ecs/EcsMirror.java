@@ -0,0 +1,25 @@
+package org.dru.dusap.ecs;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+public final class EcsMirror {
+    private final EcsEngine engine;
+    private final EcsDeltaDecoder decoder;
+
+    public EcsMirror(final EcsEngine engine) {
+        Objects.requireNonNull(engine, "engine");
+        this.engine = engine;
+        decoder = new EcsDeltaDecoder(engine);
+    }
+
+    public EcsEngine getEngine() {
+        return engine;
+    }
+
+    public void apply(final ByteBuffer packet) throws StreamCorruptedException {
+        Objects.requireNonNull(packet, "packet");
+        decoder.decode(packet.duplicate());
+    }
+}
@@ -0,0 +1,46 @@
+package org.dru.dusap.ecs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+public final class EcsObserver {
+    private final EcsReplicator replicator;
+    private final EcsDeltaEncoder encoder;
+
+    EcsObserver(final EcsReplicator replicator, final EcsFamily family, final int capacity) {
+        Objects.requireNonNull(replicator, "replicator");
+        this.replicator = replicator;
+        encoder = new EcsDeltaEncoder(replicator.getEngine(), family, false, capacity);
+    }
+
+    public EcsReplicator getReplicator() {
+        return replicator;
+    }
+
+    EcsFamily getFamily() {
+        return encoder.getFamily();
+    }
+
+    public int getEntityCount() {
+        return getFamily().getEntityCount();
+    }
+
+    public ByteBuffer encode() {
+        try {
+            encoder.encode(EcsDeltaEncoder.DELTA, null);
+        } catch (final IOException exc) {
+            throw new UncheckedIOException(exc);
+        }
+        return encoder.getBuffer();
+    }
+
+    public void reset() {
+        encoder.reset();
+    }
+
+    void close() {
+        encoder.close();
+    }
+}
@@ -0,0 +1,94 @@
+package org.dru.dusap.ecs;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+public final class EcsPrefab {
+    private final EcsEngine engine;
+    private final EcsBitSet bitSet;
+    private int[] componentIds;
+    private Supplier<?>[] factories;
+    private EcsValueMapping[] valueMappings;
+    private EcsFamily[] families;
+    private int familyVersion;
+
+    EcsPrefab(final EcsEngine engine) {
+        this.engine = engine;
+        bitSet = EcsBitSet.create(engine.getMaxComponentCount());
+        componentIds = new int[0];
+        factories = new Supplier<?>[0];
+        valueMappings = new EcsValueMapping[0];
+        families = null;
+        familyVersion = -1;
+    }
+
+    public EcsEngine getEngine() {
+        return engine;
+    }
+
+    @SuppressWarnings("UnusedReturnValue")
+    public <T> EcsPrefab with(final Class<T> type, final Supplier<? extends T> factory) {
+        Objects.requireNonNull(factory, "factory");
+        final EcsMapping<T> mapping = engine.getMapping(type);
+        if (mapping.getValueMapping() != null) {
+            throw new IllegalArgumentException("component is value mapped: " + type.getName());
+        }
+        return with(mapping.getId(), factory, null);
+    }
+
+    @SuppressWarnings("UnusedReturnValue")
+    public EcsPrefab with(final EcsValueMapping mapping) {
+        Objects.requireNonNull(mapping, "mapping");
+        if (mapping.getEngine() != engine) {
+            throw new IllegalArgumentException("engine mismatch");
+        }
+        return with(mapping.getId(), null, mapping);
+    }
+
+    EcsBitSet getBitSet() {
+        return bitSet;
+    }
+
+    int[] getComponentIds() {
+        return componentIds;
+    }
+
+    synchronized EcsFamily[] getFamilies() {
+        final int version = engine.getFamilyVersion();
+        if (version != familyVersion) {
+            families = engine.getFamilies(bitSet);
+            familyVersion = version;
+        }
+        return families;
+    }
+
+    void initialize(final EcsEntity entity) {
+        final Object[] components = new Object[componentIds.length];
+        for (int index = 0; index < componentIds.length; index++) {
+            final Supplier<?> factory = factories[index];
+            if (factory != null) {
+                components[index] = Objects.requireNonNull(factory.get(), "component");
+            } else {
+                valueMappings[index].reset(entity);
+            }
+        }
+        entity.initialize(bitSet, componentIds, components);
+    }
+
+    private synchronized EcsPrefab with(final int componentId, final Supplier<?> factory,
+                                        final EcsValueMapping valueMapping) {
+        if (bitSet.get(componentId)) {
+            throw new IllegalArgumentException("component already set: " + componentId);
+        }
+        bitSet.set(componentId);
+        componentIds = Arrays.copyOf(componentIds, componentIds.length + 1);
+        componentIds[componentIds.length - 1] = componentId;
+        factories = Arrays.copyOf(factories, factories.length + 1);
+        factories[factories.length - 1] = factory;
+        valueMappings = Arrays.copyOf(valueMappings, valueMappings.length + 1);
+        valueMappings[valueMappings.length - 1] = valueMapping;
+        familyVersion = -1;
+        return this;
+    }
+}
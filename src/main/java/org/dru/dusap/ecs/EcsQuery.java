@@ -0,0 +1,103 @@
+package org.dru.dusap.ecs;
+
+import java.lang.ref.Cleaner;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A query retains its family until closed, so use it in a try-with-resources block. A query that becomes unreachable
+ * without being closed is counted in {@link EcsMetricsSnapshot#getQueriesLeaked()} and its family is released at the
+ * end of the next update.
+ */
+public final class EcsQuery implements Iterable<EcsEntity>, AutoCloseable {
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final EcsEngine engine;
+    private final EcsFamily family;
+    private final AtomicBoolean closed;
+    private final Leak leak;
+    private final Cleaner.Cleanable cleanable;
+
+    EcsQuery(final EcsEngine engine, final EcsFamily family) {
+        this.engine = engine;
+        this.family = family;
+        closed = new AtomicBoolean();
+        leak = new Leak(engine, family);
+        cleanable = CLEANER.register(this, leak);
+    }
+
+    public EcsEngine getEngine() {
+        return engine;
+    }
+
+    public EcsFamily getFamily() {
+        checkOpen();
+        return family;
+    }
+
+    public int getEntityCount() {
+        return getFamily().getEntityCount();
+    }
+
+    public boolean isEmpty() {
+        return getEntityCount() == 0;
+    }
+
+    @Override
+    public void forEach(final Consumer<? super EcsEntity> action) {
+        Objects.requireNonNull(action, "action");
+        getFamily().forEach(action);
+    }
+
+    @Override
+    public Iterator<EcsEntity> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    @Override
+    public Spliterator<EcsEntity> spliterator() {
+        return getFamily().spliterator();
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            leak.closed = true;
+            cleanable.clean();
+            engine.releaseFamily(family);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed.get()) {
+            throw new IllegalStateException("query closed");
+        }
+    }
+
+    private static final class Leak implements Runnable {
+        private final EcsEngine engine;
+        private final EcsFamily family;
+        private volatile boolean closed;
+
+        private Leak(final EcsEngine engine, final EcsFamily family) {
+            this.engine = engine;
+            this.family = family;
+            closed = false;
+        }
+
+        @Override
+        public void run() {
+            if (!closed) {
+                engine.queryLeaked(family);
+            }
+        }
+    }
+}
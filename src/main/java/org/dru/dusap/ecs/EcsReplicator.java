@@ -0,0 +1,50 @@
+package org.dru.dusap.ecs;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public final class EcsReplicator {
+    private static final int BUFFER_SIZE = 1 << 12;
+
+    private final EcsEngine engine;
+    private final List<EcsObserver> observers;
+
+    public EcsReplicator(final EcsEngine engine) {
+        Objects.requireNonNull(engine, "engine");
+        this.engine = engine;
+        observers = new CopyOnWriteArrayList<>();
+    }
+
+    public EcsEngine getEngine() {
+        return engine;
+    }
+
+    public EcsObserver addObserver(final Consumer<EcsBuilder> interest) {
+        Objects.requireNonNull(interest, "interest");
+        final EcsBuilder builder = new EcsBuilder(engine);
+        interest.accept(builder);
+        final EcsObserver observer = new EcsObserver(this, engine.acquireFamily(builder.getAspect()), BUFFER_SIZE);
+        observers.add(observer);
+        return observer;
+    }
+
+    public void removeObserver(final EcsObserver observer) {
+        Objects.requireNonNull(observer, "observer");
+        if (!observers.remove(observer)) {
+            throw new IllegalArgumentException("observer not added");
+        }
+        observer.close();
+        engine.releaseFamily(observer.getFamily());
+    }
+
+    public void encode(final BiConsumer<EcsObserver, ByteBuffer> sink) {
+        Objects.requireNonNull(sink, "sink");
+        for (final EcsObserver observer : observers) {
+            sink.accept(observer, observer.encode());
+        }
+    }
+}
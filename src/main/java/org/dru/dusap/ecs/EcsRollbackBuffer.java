@@ -0,0 +1,353 @@
+package org.dru.dusap.ecs;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Ring buffer of captured world states. Object components with a codec are re-encoded on every capture unless
+ * {@link #trackChanges(Class)} declares that in-place edits go through {@link EcsEntity#getMutableComponent} or
+ * {@link EcsEntity#markChanged}. Object components without a codec are kept by reference, so they have to be
+ * replaced rather than mutated to roll back correctly.
+ */
+public final class EcsRollbackBuffer {
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    private final EcsEngine engine;
+    private final EcsRollbackFrame[] frames;
+    private final EcsBitSet changed;
+    private final EcsBitSet touched;
+    private final EcsBitSet tracked;
+    private final EcsBitSet encoded;
+    private ByteBuffer buffer;
+    private int newest;
+    private int size;
+    private int tick;
+
+    public EcsRollbackBuffer(final EcsEngine engine, final int capacity) {
+        Objects.requireNonNull(engine, "engine");
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity has to be 1 or greater: " + capacity);
+        }
+        this.engine = engine;
+        frames = new EcsRollbackFrame[capacity];
+        changed = EcsBitSet.create(engine.getMaxComponentCount());
+        touched = EcsBitSet.create(engine.getMaxComponentCount());
+        tracked = EcsBitSet.create(engine.getMaxComponentCount());
+        encoded = EcsBitSet.create(engine.getMaxComponentCount());
+        buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+        newest = capacity - 1;
+        size = 0;
+        tick = 0;
+    }
+
+    public EcsEngine getEngine() {
+        return engine;
+    }
+
+    public int getCapacity() {
+        return frames.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void trackChanges(final Class<?> type) {
+        tracked.set(engine.getMapping(type).getId());
+    }
+
+    public boolean contains(final long frame) {
+        return find(frame) != -1;
+    }
+
+    public long getOldestFrame() {
+        checkNotEmpty();
+        return frames[(newest - size + 1 + frames.length) % frames.length].getFrame();
+    }
+
+    public long getNewestFrame() {
+        checkNotEmpty();
+        return frames[newest].getFrame();
+    }
+
+    public void capture(final long frame) {
+        if (size > 0 && frame <= frames[newest].getFrame()) {
+            throw new IllegalArgumentException("frame not after newest: " + frame);
+        }
+        engine.flush();
+        final EcsMapping<?>[] mappings = engine.getMappings();
+        final EcsChangeTracker[] trackers = getTrackers(mappings);
+        final int since = tick;
+        collectTouched(trackers, since);
+        collectEncoded(mappings);
+        final int now = engine.advanceChangeTick();
+        final EcsRollbackFrame previous = (size > 0 ? frames[newest] : null);
+        final int[] generations = engine.getGenerations();
+        final int next = (newest + 1) % frames.length;
+        final EcsRollbackFrame evicted = frames[next];
+        final EcsRollbackEntity[] entities;
+        if (evicted != null && evicted != previous && evicted.getEntities().length >= generations.length) {
+            entities = evicted.getEntities();
+            Arrays.fill(entities, null);
+        } else {
+            entities = new EcsRollbackEntity[generations.length];
+        }
+        engine.forEach(entity -> {
+            final EcsRollbackEntity last = (previous != null ? previous.getEntity(entity.getId()) : null);
+            entities[entity.getId()] = (last != null && unchanged(last, entity, trackers, since) ? last
+                    : captureEntity(entity, mappings, last, trackers, since));
+        });
+        frames[next] = new EcsRollbackFrame(frame, generations, engine.getFreeSlots(), entities);
+        newest = next;
+        size = Math.min(size + 1, frames.length);
+        tick = now;
+    }
+
+    public void restore(final long frame) {
+        final int position = find(frame);
+        if (position == -1) {
+            throw new IllegalArgumentException("frame not buffered: " + frame);
+        }
+        engine.flush();
+        final EcsRollbackFrame target = frames[position];
+        final EcsRollbackFrame latest = frames[newest];
+        final EcsMapping<?>[] mappings = engine.getMappings();
+        final EcsChangeTracker[] trackers = getTrackers(mappings);
+        final int since = tick;
+        collectTouched(trackers, since);
+        collectEncoded(mappings);
+        final List<EcsEntity> victims = new ArrayList<>();
+        engine.forEach(entity -> {
+            final EcsRollbackEntity record = target.getEntity(entity.getId());
+            if (record == null || record.getHandle() != entity.getHandle()) {
+                victims.add(entity);
+            }
+        });
+        engine.destroyEntities(victims, true);
+        final EcsRollbackEntity[] entities = target.getEntities();
+        for (int id = 0; id < entities.length; id++) {
+            final EcsRollbackEntity record = entities[id];
+            if (record == null) {
+                continue;
+            }
+            if (engine.isAlive(record.getHandle())) {
+                final EcsEntity entity = engine.getEntity(record.getHandle());
+                if (latest.getEntity(id) != record || !unchanged(record, entity, trackers, since)) {
+                    updateEntity(entity, record, mappings);
+                }
+            } else {
+                final EcsEntity entity = engine.restoreEntity(record.getHandle());
+                restoreComponents(entity, record, mappings);
+                engine.addEntityNow(entity);
+            }
+        }
+        engine.restoreSlots(target.getGenerations(), target.getFreeSlots());
+        while (newest != position) {
+            frames[newest] = null;
+            newest = (newest - 1 + frames.length) % frames.length;
+            size--;
+        }
+        tick = engine.advanceChangeTick();
+    }
+
+    public void clear() {
+        Arrays.fill(frames, null);
+        newest = frames.length - 1;
+        size = 0;
+    }
+
+    private int find(final long frame) {
+        for (int count = 0; count < size; count++) {
+            final int position = (newest - count + frames.length) % frames.length;
+            final long current = frames[position].getFrame();
+            if (current == frame) {
+                return position;
+            }
+            if (current < frame) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new IllegalStateException("no frames captured");
+        }
+    }
+
+    private EcsChangeTracker[] getTrackers(final EcsMapping<?>[] mappings) {
+        final EcsChangeTracker[] result = new EcsChangeTracker[mappings.length];
+        for (int id = 0; id < mappings.length; id++) {
+            if (mappings[id] != null) {
+                result[id] = engine.getChangeTracker(id, true);
+            }
+        }
+        return result;
+    }
+
+    private void collectTouched(final EcsChangeTracker[] trackers, final int since) {
+        touched.clear();
+        for (int id = 0; id < trackers.length; id++) {
+            if (trackers[id] != null && trackers[id].getLastTick() - since > 0) {
+                touched.set(id);
+            }
+        }
+    }
+
+    private void collectEncoded(final EcsMapping<?>[] mappings) {
+        encoded.clear();
+        for (int id = 0; id < mappings.length; id++) {
+            final EcsMapping<?> mapping = mappings[id];
+            if (mapping != null && mapping.getValueMapping() == null && mapping.getCodec() != null
+                    && !tracked.get(id)) {
+                encoded.set(id);
+            }
+        }
+    }
+
+    private boolean changedSince(final EcsChangeTracker[] trackers, final int id, final EcsEntity entity,
+                                 final int since) {
+        return touched.get(id) && trackers[id].getChangedTick(entity.getId()) - since > 0;
+    }
+
+    private boolean unchanged(final EcsRollbackEntity record, final EcsEntity entity,
+                              final EcsChangeTracker[] trackers, final int since) {
+        final EcsBitSet bitSet = entity.getBitSet();
+        if (record.getHandle() != entity.getHandle() || !record.getBitSet().equals(bitSet)) {
+            return false;
+        }
+        if (bitSet.intersects(encoded)) {
+            return false;
+        }
+        if (!bitSet.intersects(touched)) {
+            return true;
+        }
+        for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+            if (changedSince(trackers, id, entity, since)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private EcsRollbackEntity captureEntity(final EcsEntity entity, final EcsMapping<?>[] mappings,
+                                            final EcsRollbackEntity last, final EcsChangeTracker[] trackers,
+                                            final int since) {
+        final EcsBitSet bitSet = entity.getBitSet();
+        final boolean reusable = (last != null && last.getHandle() == entity.getHandle()
+                && last.getBitSet().equals(bitSet));
+        int count = 0;
+        for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+            count++;
+        }
+        final byte[] kinds = new byte[count];
+        final Object[] components = new Object[count];
+        int index = 0;
+        for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+            final EcsMapping<?> mapping = mappings[id];
+            if (reusable && !encoded.get(id) && !changedSince(trackers, id, entity, since)) {
+                kinds[index] = last.getKind(index);
+                components[index] = last.getComponent(index);
+            } else if (mapping.getValueMapping() != null) {
+                kinds[index] = EcsRollbackEntity.VALUE;
+                components[index] = capture(mapping, entity);
+            } else if (mapping.getCodec() != null) {
+                kinds[index] = EcsRollbackEntity.CODEC;
+                components[index] = capture(mapping, entity);
+            } else {
+                kinds[index] = EcsRollbackEntity.REFERENCE;
+                components[index] = entity.getComponent(id);
+            }
+            index++;
+        }
+        return new EcsRollbackEntity(entity.getHandle(), bitSet.copy(), kinds, components);
+    }
+
+    private byte[] capture(final EcsMapping<?> mapping, final EcsEntity entity) {
+        while (true) {
+            buffer.clear();
+            try {
+                final EcsValueMapping valueMapping = mapping.getValueMapping();
+                if (valueMapping != null) {
+                    valueMapping.encode(entity, buffer);
+                } else {
+                    encode(mapping, entity.getComponent(mapping.getId()));
+                }
+                buffer.flip();
+                final byte[] result = new byte[buffer.remaining()];
+                buffer.get(result);
+                return result;
+            } catch (final BufferOverflowException exc) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    private <T> void encode(final EcsMapping<T> mapping, final Object component) {
+        mapping.getCodec().encode(mapping.getType().cast(component), buffer);
+    }
+
+    private void updateEntity(final EcsEntity entity, final EcsRollbackEntity record,
+                              final EcsMapping<?>[] mappings) {
+        final EcsArchetype source = entity.getArchetype();
+        final EcsBitSet current = entity.getBitSet();
+        final EcsBitSet bitSet = record.getBitSet();
+        changed.clear();
+        for (int id = current.nextSetBit(0); id >= 0; id = current.nextSetBit(id + 1)) {
+            if (!bitSet.get(id)) {
+                changed.set(id);
+            }
+        }
+        for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+            entity.removeComponent(id);
+        }
+        for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+            if (!current.get(id)) {
+                changed.set(id);
+            }
+        }
+        restoreComponents(entity, record, mappings);
+        if (changed.nextSetBit(0) >= 0) {
+            engine.componentsChanged(entity, source, changed);
+        }
+    }
+
+    private void restoreComponents(final EcsEntity entity, final EcsRollbackEntity record,
+                                   final EcsMapping<?>[] mappings) {
+        final EcsBitSet bitSet = record.getBitSet();
+        int index = 0;
+        for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+            final EcsMapping<?> mapping = mappings[id];
+            final Object component = record.getComponent(index);
+            switch (record.getKind(index)) {
+                case EcsRollbackEntity.VALUE: {
+                    final EcsValueMapping valueMapping = mapping.getValueMapping();
+                    if (valueMapping == null) {
+                        throw new IllegalStateException("value mapping not set: " + mapping.getType().getName());
+                    }
+                    valueMapping.decode(entity, ByteBuffer.wrap((byte[]) component));
+                    break;
+                }
+                case EcsRollbackEntity.CODEC:
+                    if (mapping.getCodec() == null) {
+                        throw new IllegalStateException("codec not set: " + mapping.getType().getName());
+                    }
+                    entity.putComponent(id, mapping.getCodec().decode(ByteBuffer.wrap((byte[]) component)));
+                    break;
+                default:
+                    entity.putComponent(id, component);
+                    break;
+            }
+            index++;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.dru.dusap.ecs;
+
+final class EcsRollbackEntity {
+    static final byte REFERENCE = 0;
+    static final byte CODEC = 1;
+    static final byte VALUE = 2;
+
+    private final long handle;
+    private final EcsBitSet bitSet;
+    private final byte[] kinds;
+    private final Object[] components;
+
+    EcsRollbackEntity(final long handle, final EcsBitSet bitSet, final byte[] kinds, final Object[] components) {
+        this.handle = handle;
+        this.bitSet = bitSet;
+        this.kinds = kinds;
+        this.components = components;
+    }
+
+    long getHandle() {
+        return handle;
+    }
+
+    EcsBitSet getBitSet() {
+        return bitSet;
+    }
+
+    byte getKind(final int index) {
+        return kinds[index];
+    }
+
+    Object getComponent(final int index) {
+        return components[index];
+    }
+}
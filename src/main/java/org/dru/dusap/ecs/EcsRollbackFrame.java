@@ -0,0 +1,36 @@
+package org.dru.dusap.ecs;
+
+final class EcsRollbackFrame {
+    private final long frame;
+    private final int[] generations;
+    private final int[] freeSlots;
+    private final EcsRollbackEntity[] entities;
+
+    EcsRollbackFrame(final long frame, final int[] generations, final int[] freeSlots,
+                     final EcsRollbackEntity[] entities) {
+        this.frame = frame;
+        this.generations = generations;
+        this.freeSlots = freeSlots;
+        this.entities = entities;
+    }
+
+    long getFrame() {
+        return frame;
+    }
+
+    int[] getGenerations() {
+        return generations;
+    }
+
+    int[] getFreeSlots() {
+        return freeSlots;
+    }
+
+    EcsRollbackEntity[] getEntities() {
+        return entities;
+    }
+
+    EcsRollbackEntity getEntity(final int index) {
+        return (index < entities.length ? entities[index] : null);
+    }
+}
@@ -0,0 +1,27 @@
+package org.dru.dusap.ecs;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+public final class EcsSnapshotReader {
+    private final EcsEngine engine;
+
+    public EcsSnapshotReader(final EcsEngine engine) {
+        Objects.requireNonNull(engine, "engine");
+        this.engine = engine;
+    }
+
+    public EcsEngine getEngine() {
+        return engine;
+    }
+
+    public void read(final Path path) throws IOException {
+        Objects.requireNonNull(path, "path");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            new EcsDeltaDecoder(engine).decode(channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size()));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.dru.dusap.ecs;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+public final class EcsSnapshotWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final EcsEngine engine;
+    private final EcsDeltaEncoder encoder;
+    private boolean written;
+
+    public EcsSnapshotWriter(final EcsEngine engine) {
+        Objects.requireNonNull(engine, "engine");
+        this.engine = engine;
+        encoder = new EcsDeltaEncoder(engine, null, true, BUFFER_SIZE);
+        written = false;
+    }
+
+    public EcsEngine getEngine() {
+        return engine;
+    }
+
+    public void writeFull(final Path path) throws IOException {
+        write(path, EcsDeltaEncoder.FULL);
+    }
+
+    public void writeDelta(final Path path) throws IOException {
+        if (!written) {
+            throw new IllegalStateException("full snapshot not written");
+        }
+        write(path, EcsDeltaEncoder.DELTA);
+    }
+
+    private void write(final Path path, final byte kind) throws IOException {
+        Objects.requireNonNull(path, "path");
+        encoder.forgetMappings();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            encoder.encode(kind, channel);
+        }
+        written = true;
+    }
+}
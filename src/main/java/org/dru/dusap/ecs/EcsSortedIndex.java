@@ -0,0 +1,225 @@
+package org.dru.dusap.ecs;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keeps entities ordered by a {@code long} key derived from one component. The ordering is rebuilt once the engine
+ * finishes {@link EcsEngine#update()}, so range queries issued by systems reflect the previous tick.
+ */
+public final class EcsSortedIndex<T> extends EcsComponentIndex<T> {
+    private final ToLongFunction<? super T> keyFunction;
+    private long[] keys;
+    private int[] ids;
+    private int count;
+    private int[] positions;
+    private long[] pendingKeys;
+    private int[] pendingIds;
+    private int pendingCount;
+    private int tombstoneCount;
+
+    EcsSortedIndex(final EcsEngine engine, final EcsMapping<T> mapping, final EcsFamily family,
+                   final ToLongFunction<? super T> keyFunction) {
+        super(engine, mapping, family);
+        this.keyFunction = keyFunction;
+        keys = new long[0];
+        ids = new int[0];
+        count = 0;
+        positions = new int[0];
+        pendingKeys = new long[0];
+        pendingIds = new int[0];
+        pendingCount = 0;
+        tombstoneCount = 0;
+    }
+
+    public EcsEntity getFirst() {
+        refreshIfIdle();
+        for (int position = 0; position < count; position++) {
+            if (ids[position] != -1) {
+                return getEntity(ids[position]);
+            }
+        }
+        return null;
+    }
+
+    public EcsEntity getLast() {
+        refreshIfIdle();
+        for (int position = count; --position >= 0; ) {
+            if (ids[position] != -1) {
+                return getEntity(ids[position]);
+            }
+        }
+        return null;
+    }
+
+    public int range(final long min, final long max, final Consumer<EcsEntity> action) {
+        Objects.requireNonNull(action, "action");
+        refreshIfIdle();
+        int result = 0;
+        for (int position = lowerBound(min); position < count && keys[position] <= max; position++) {
+            if (ids[position] != -1) {
+                action.accept(getEntity(ids[position]));
+                result++;
+            }
+        }
+        return result;
+    }
+
+    public int range(final long min, final long max, final EcsEntity[] result) {
+        Objects.requireNonNull(result, "result");
+        refreshIfIdle();
+        int total = 0;
+        for (int position = lowerBound(min); position < count && keys[position] <= max; position++) {
+            if (ids[position] != -1) {
+                if (total < result.length) {
+                    result[total] = getEntity(ids[position]);
+                }
+                total++;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    void added(final int id, final T component) {
+        if (id >= positions.length) {
+            final int length = positions.length;
+            positions = Arrays.copyOf(positions, Math.max(id + 1, (length + 1) * 3 / 2));
+            Arrays.fill(positions, length, positions.length, -1);
+        }
+        addPending(id, keyFunction.applyAsLong(component));
+    }
+
+    @Override
+    void changed(final int id, final T component) {
+        final long key = keyFunction.applyAsLong(component);
+        final int position = positions[id];
+        if (position != -1 && keys[position] == key) {
+            return;
+        }
+        removed(id);
+        addPending(id, key);
+    }
+
+    @Override
+    void removed(final int id) {
+        final int position = positions[id];
+        if (position != -1) {
+            ids[position] = -1;
+            positions[id] = -1;
+            tombstoneCount++;
+        }
+    }
+
+    @Override
+    void refreshed() {
+        if (pendingCount == 0 && tombstoneCount == 0) {
+            return;
+        }
+        int live = 0;
+        for (int position = 0; position < count; position++) {
+            if (ids[position] != -1) {
+                keys[live] = keys[position];
+                ids[live] = ids[position];
+                live++;
+            }
+        }
+        sort(pendingKeys, pendingIds, 0, pendingCount - 1);
+        final int newCount = live + pendingCount;
+        if (newCount > keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(newCount, (keys.length + 1) * 3 / 2));
+            ids = Arrays.copyOf(ids, keys.length);
+        }
+        int left = live - 1;
+        int right = pendingCount - 1;
+        for (int position = newCount; --position >= 0; ) {
+            if (right < 0 || (left >= 0 && keys[left] > pendingKeys[right])) {
+                keys[position] = keys[left];
+                ids[position] = ids[left--];
+            } else {
+                keys[position] = pendingKeys[right];
+                ids[position] = pendingIds[right--];
+            }
+            positions[ids[position]] = position;
+        }
+        count = newCount;
+        pendingCount = 0;
+        tombstoneCount = 0;
+    }
+
+    @Override
+    void cleared() {
+        keys = new long[0];
+        ids = new int[0];
+        count = 0;
+        positions = new int[0];
+        pendingCount = 0;
+        tombstoneCount = 0;
+    }
+
+    private void addPending(final int id, final long key) {
+        if (pendingCount >= pendingKeys.length) {
+            pendingKeys = Arrays.copyOf(pendingKeys, (pendingCount + 1) * 3 / 2);
+            pendingIds = Arrays.copyOf(pendingIds, pendingKeys.length);
+        }
+        pendingKeys[pendingCount] = key;
+        pendingIds[pendingCount++] = id;
+    }
+
+    private int lowerBound(final long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (keys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static void sort(final long[] keys, final int[] ids, final int low, final int high) {
+        if (high - low < 16) {
+            for (int index = low + 1; index <= high; index++) {
+                final long key = keys[index];
+                final int id = ids[index];
+                int target = index - 1;
+                while (target >= low && keys[target] > key) {
+                    keys[target + 1] = keys[target];
+                    ids[target + 1] = ids[target];
+                    target--;
+                }
+                keys[target + 1] = key;
+                ids[target + 1] = id;
+            }
+            return;
+        }
+        final long pivot = keys[(low + high) >>> 1];
+        int left = low;
+        int right = high;
+        while (left <= right) {
+            while (keys[left] < pivot) {
+                left++;
+            }
+            while (keys[right] > pivot) {
+                right--;
+            }
+            if (left <= right) {
+                final long key = keys[left];
+                keys[left] = keys[right];
+                keys[right] = key;
+                final int id = ids[left];
+                ids[left] = ids[right];
+                ids[right] = id;
+                left++;
+                right--;
+            }
+        }
+        sort(keys, ids, low, right);
+        sort(keys, ids, left, high);
+    }
+}
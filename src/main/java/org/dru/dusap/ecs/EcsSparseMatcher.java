@@ -0,0 +1,68 @@
+package org.dru.dusap.ecs;
+
+import java.util.Arrays;
+
+final class EcsSparseMatcher extends EcsMatcher {
+    private final int[] allOfIndexes;
+    private final long[] allOfWords;
+    private final int[] anyOfIndexes;
+    private final long[] anyOfWords;
+    private final int[] noneOfIndexes;
+    private final long[] noneOfWords;
+
+    EcsSparseMatcher(final EcsBitSet allOf, final EcsBitSet anyOf, final EcsBitSet noneOf) {
+        allOfIndexes = indexes(allOf);
+        allOfWords = words(allOf, allOfIndexes);
+        anyOfIndexes = indexes(anyOf);
+        anyOfWords = words(anyOf, anyOfIndexes);
+        noneOfIndexes = indexes(noneOf);
+        noneOfWords = words(noneOf, noneOfIndexes);
+    }
+
+    @Override
+    boolean test(final EcsBitSet bitSet) {
+        final int wordCount = bitSet.getWordCount();
+        for (int index = 0; index < allOfIndexes.length; index++) {
+            final int wordIndex = allOfIndexes[index];
+            final long value = allOfWords[index];
+            if (wordIndex >= wordCount || (bitSet.getWord(wordIndex) & value) != value) {
+                return false;
+            }
+        }
+        if (anyOfIndexes.length > 0 && !intersects(bitSet, wordCount, anyOfIndexes, anyOfWords)) {
+            return false;
+        }
+        return !intersects(bitSet, wordCount, noneOfIndexes, noneOfWords);
+    }
+
+    private static boolean intersects(final EcsBitSet bitSet, final int wordCount, final int[] indexes,
+                                      final long[] words) {
+        for (int index = 0; index < indexes.length; index++) {
+            final int wordIndex = indexes[index];
+            if (wordIndex < wordCount && (bitSet.getWord(wordIndex) & words[index]) != 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] indexes(final EcsBitSet bitSet) {
+        final int wordCount = wordCount(bitSet);
+        final int[] result = new int[wordCount];
+        int count = 0;
+        for (int index = 0; index < wordCount; index++) {
+            if (bitSet.getWord(index) != 0L) {
+                result[count++] = index;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static long[] words(final EcsBitSet bitSet, final int[] indexes) {
+        final long[] result = new long[indexes.length];
+        for (int index = 0; index < indexes.length; index++) {
+            result[index] = bitSet.getWord(indexes[index]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,164 @@
+package org.dru.dusap.ecs;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Buckets entities into square grid cells by a position read from one component. Cells are reassigned at the end of
+ * {@link EcsEngine#update()}; box and radius queries run by systems see positions from the last completed tick.
+ */
+public final class EcsSpatialIndex<T> extends EcsComponentIndex<T> {
+    private final ToDoubleFunction<? super T> xFunction;
+    private final ToDoubleFunction<? super T> yFunction;
+    private final float cellSize;
+    private final float inverseCellSize;
+    private final EcsBucketTable cells;
+    private float[] xs;
+    private float[] ys;
+
+    EcsSpatialIndex(final EcsEngine engine, final EcsMapping<T> mapping, final EcsFamily family,
+                    final ToDoubleFunction<? super T> xFunction, final ToDoubleFunction<? super T> yFunction,
+                    final float cellSize) {
+        super(engine, mapping, family);
+        this.xFunction = xFunction;
+        this.yFunction = yFunction;
+        this.cellSize = cellSize;
+        inverseCellSize = 1.0f / cellSize;
+        cells = new EcsBucketTable();
+        xs = new float[0];
+        ys = new float[0];
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    public int queryBox(final float minX, final float minY, final float maxX, final float maxY,
+                        final Consumer<EcsEntity> action) {
+        Objects.requireNonNull(action, "action");
+        return query(minX, minY, maxX, maxY, 0.0f, 0.0f, -1.0f, action, null);
+    }
+
+    public int queryBox(final float minX, final float minY, final float maxX, final float maxY,
+                        final EcsEntity[] result) {
+        Objects.requireNonNull(result, "result");
+        return query(minX, minY, maxX, maxY, 0.0f, 0.0f, -1.0f, null, result);
+    }
+
+    public int queryRadius(final float x, final float y, final float radius, final Consumer<EcsEntity> action) {
+        Objects.requireNonNull(action, "action");
+        checkRadius(radius);
+        return query(x - radius, y - radius, x + radius, y + radius, x, y, radius * radius, action, null);
+    }
+
+    public int queryRadius(final float x, final float y, final float radius, final EcsEntity[] result) {
+        Objects.requireNonNull(result, "result");
+        checkRadius(radius);
+        return query(x - radius, y - radius, x + radius, y + radius, x, y, radius * radius, null, result);
+    }
+
+    @Override
+    void added(final int id, final T component) {
+        if (id >= xs.length) {
+            xs = Arrays.copyOf(xs, Math.max(id + 1, (xs.length + 1) * 3 / 2));
+            ys = Arrays.copyOf(ys, xs.length);
+        }
+        final float x = (float) xFunction.applyAsDouble(component);
+        final float y = (float) yFunction.applyAsDouble(component);
+        xs[id] = x;
+        ys[id] = y;
+        cells.add(id, key(cell(x), cell(y)));
+    }
+
+    @Override
+    void changed(final int id, final T component) {
+        final float x = (float) xFunction.applyAsDouble(component);
+        final float y = (float) yFunction.applyAsDouble(component);
+        xs[id] = x;
+        ys[id] = y;
+        cells.move(id, key(cell(x), cell(y)));
+    }
+
+    @Override
+    void removed(final int id) {
+        cells.remove(id);
+    }
+
+    @Override
+    void cleared() {
+        cells.clear();
+    }
+
+    private int query(final float minX, final float minY, final float maxX, final float maxY,
+                      final float x, final float y, final float radiusSquared,
+                      final Consumer<EcsEntity> action, final EcsEntity[] result) {
+        refreshIfIdle();
+        final long minCellX = cell(minX);
+        final long minCellY = cell(minY);
+        final long maxCellX = cell(maxX);
+        final long maxCellY = cell(maxY);
+        if (minCellX > maxCellX || minCellY > maxCellY) {
+            return 0;
+        }
+        int count = 0;
+        if ((maxCellX - minCellX + 1) * (maxCellY - minCellY + 1) > cells.getCapacity()) {
+            for (int slot = 0; slot < cells.getCapacity(); slot++) {
+                if (cells.isUsed(slot)) {
+                    count = visit(cells.getHead(slot), minX, minY, maxX, maxY, x, y, radiusSquared, action, result,
+                            count);
+                }
+            }
+            return count;
+        }
+        for (long cellY = minCellY; cellY <= maxCellY; cellY++) {
+            for (long cellX = minCellX; cellX <= maxCellX; cellX++) {
+                count = visit(cells.find(key((int) cellX, (int) cellY)), minX, minY, maxX, maxY, x, y,
+                        radiusSquared, action, result, count);
+            }
+        }
+        return count;
+    }
+
+    private int visit(final int head, final float minX, final float minY, final float maxX, final float maxY,
+                      final float x, final float y, final float radiusSquared,
+                      final Consumer<EcsEntity> action, final EcsEntity[] result, final int count) {
+        int total = count;
+        for (int id = head; id != -1; id = cells.getNext(id)) {
+            final float entityX = xs[id];
+            final float entityY = ys[id];
+            if (entityX < minX || entityX > maxX || entityY < minY || entityY > maxY) {
+                continue;
+            }
+            if (radiusSquared >= 0.0f) {
+                final float dx = entityX - x;
+                final float dy = entityY - y;
+                if (dx * dx + dy * dy > radiusSquared) {
+                    continue;
+                }
+            }
+            if (action != null) {
+                action.accept(getEntity(id));
+            } else if (total < result.length) {
+                result[total] = getEntity(id);
+            }
+            total++;
+        }
+        return total;
+    }
+
+    private int cell(final float coordinate) {
+        return (int) Math.floor(coordinate * inverseCellSize);
+    }
+
+    private static void checkRadius(final float radius) {
+        if (!(radius >= 0.0f)) {
+            throw new IllegalArgumentException("invalid radius: " + radius);
+        }
+    }
+
+    private static long key(final int cellX, final int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+}
@@ -0,0 +1,89 @@
+package org.dru.dusap.ecs;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+final class EcsSpliterator implements Spliterator<EcsEntity> {
+    private final EcsEntity[][] segments;
+    private final int[] offsets;
+    private final int batchSize;
+    private final int fence;
+    private int index;
+
+    EcsSpliterator(final EcsEntity[][] segments, final int[] offsets, final int batchSize) {
+        this(segments, offsets, batchSize, 0, offsets[segments.length]);
+    }
+
+    private EcsSpliterator(final EcsEntity[][] segments, final int[] offsets, final int batchSize,
+                           final int index, final int fence) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize has to be 1 or greater: " + batchSize);
+        }
+        this.segments = segments;
+        this.offsets = offsets;
+        this.batchSize = batchSize;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super EcsEntity> action) {
+        Objects.requireNonNull(action, "action");
+        if (index >= fence) {
+            return false;
+        }
+        final int segment = segmentOf(index);
+        action.accept(segments[segment][index - offsets[segment]]);
+        index++;
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super EcsEntity> action) {
+        Objects.requireNonNull(action, "action");
+        int segment = segmentOf(index);
+        while (index < fence) {
+            final EcsEntity[] entities = segments[segment];
+            final int offset = offsets[segment];
+            final int end = Math.min(fence, offsets[segment + 1]);
+            for (int position = index; position < end; position++) {
+                action.accept(entities[position - offset]);
+            }
+            index = end;
+            segment++;
+        }
+    }
+
+    @Override
+    public Spliterator<EcsEntity> trySplit() {
+        final int remaining = fence - index;
+        if (remaining < batchSize << 1) {
+            return null;
+        }
+        final int middle = index + (remaining >> 1) / batchSize * batchSize;
+        final EcsSpliterator prefix = new EcsSpliterator(segments, offsets, batchSize, index, middle);
+        index = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+    private int segmentOf(final int position) {
+        final int found = Arrays.binarySearch(offsets, 0, segments.length, position);
+        int segment = (found >= 0 ? found : -found - 2);
+        while (segment < segments.length - 1 && offsets[segment + 1] == position) {
+            segment++;
+        }
+        return segment;
+    }
+}
@@ -0,0 +1,6 @@
+package org.dru.dusap.ecs;
+
+public enum EcsStepPolicy {
+    CATCH_UP,
+    DROP
+}
@@ -0,0 +1,131 @@
+package org.dru.dusap.ecs;
+
+import java.nio.ByteBuffer;
+
+public final class EcsStructMapping extends EcsValueMapping {
+    private final int size;
+    private final byte[] zeros;
+
+    EcsStructMapping(final EcsMapping<?> mapping, final int size, final EcsMemory memory) {
+        super(mapping, memory);
+        if (size < 1) {
+            throw new IllegalArgumentException("size has to be 1 or greater: " + size);
+        }
+        this.size = size;
+        zeros = new byte[size];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void add(final EcsEntity entity) {
+        if (!defer(entity, 0L)) {
+            attach(entity);
+        }
+    }
+
+    public byte getByte(final EcsEntity entity, final int offset) {
+        return buffer(entity).get(offset(entity, offset, Byte.BYTES));
+    }
+
+    public void setByte(final EcsEntity entity, final int offset, final byte value) {
+        buffer(entity).put(offset(entity, offset, Byte.BYTES), value);
+        changed(entity);
+    }
+
+    public int getInt(final EcsEntity entity, final int offset) {
+        return buffer(entity).getInt(offset(entity, offset, Integer.BYTES));
+    }
+
+    public void setInt(final EcsEntity entity, final int offset, final int value) {
+        buffer(entity).putInt(offset(entity, offset, Integer.BYTES), value);
+        changed(entity);
+    }
+
+    public long getLong(final EcsEntity entity, final int offset) {
+        return buffer(entity).getLong(offset(entity, offset, Long.BYTES));
+    }
+
+    public void setLong(final EcsEntity entity, final int offset, final long value) {
+        buffer(entity).putLong(offset(entity, offset, Long.BYTES), value);
+        changed(entity);
+    }
+
+    public float getFloat(final EcsEntity entity, final int offset) {
+        return buffer(entity).getFloat(offset(entity, offset, Float.BYTES));
+    }
+
+    public void setFloat(final EcsEntity entity, final int offset, final float value) {
+        buffer(entity).putFloat(offset(entity, offset, Float.BYTES), value);
+        changed(entity);
+    }
+
+    public double getDouble(final EcsEntity entity, final int offset) {
+        return buffer(entity).getDouble(offset(entity, offset, Double.BYTES));
+    }
+
+    public void setDouble(final EcsEntity entity, final int offset, final double value) {
+        buffer(entity).putDouble(offset(entity, offset, Double.BYTES), value);
+        changed(entity);
+    }
+
+    @Override
+    Object newColumn(final int capacity) {
+        return allocate(capacity * size);
+    }
+
+    @Override
+    void reset(final Object column, final int index) {
+        final ByteBuffer target = ((ByteBuffer) column).duplicate();
+        target.position(index * size);
+        target.put(zeros);
+    }
+
+    @Override
+    void load(final Object column, final int index, final long value) {
+        reset(column, index);
+    }
+
+    @Override
+    int getValueSize() {
+        return size;
+    }
+
+    @Override
+    void copy(final Object source, final int sourceIndex, final Object target, final int targetIndex) {
+        final ByteBuffer from = ((ByteBuffer) source).duplicate();
+        from.position(sourceIndex * size).limit(sourceIndex * size + size);
+        final ByteBuffer to = ((ByteBuffer) target).duplicate();
+        to.position(targetIndex * size);
+        to.put(from);
+    }
+
+    @Override
+    void write(final Object column, final int index, final ByteBuffer target) {
+        final ByteBuffer source = ((ByteBuffer) column).duplicate();
+        source.position(index * size).limit(index * size + size);
+        target.put(source);
+    }
+
+    @Override
+    void read(final Object column, final int index, final ByteBuffer source) {
+        final ByteBuffer target = ((ByteBuffer) column).duplicate();
+        target.position(index * size);
+        final ByteBuffer slice = source.duplicate();
+        slice.limit(slice.position() + size);
+        target.put(slice);
+        source.position(source.position() + size);
+    }
+
+    private ByteBuffer buffer(final EcsEntity entity) {
+        return (ByteBuffer) column(entity);
+    }
+
+    private int offset(final EcsEntity entity, final int offset, final int bytes) {
+        if (offset < 0 || offset + bytes > size) {
+            throw new IndexOutOfBoundsException("offset out of range: " + offset);
+        }
+        return slot(entity) * size + offset;
+    }
+}
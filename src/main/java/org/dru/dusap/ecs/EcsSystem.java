@@ -1,10 +1,27 @@
 package org.dru.dusap.ecs;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
 
 public abstract class EcsSystem {
     private EcsEngine engine;
     private EcsFamily family;
+    private EcsCommandBuffer commandBuffer;
+    private EcsBitSet reads;
+    private EcsBitSet writes;
+    private final EcsHistogram histogram = new EcsHistogram();
+    private volatile long lastUpdateNanos;
+    private int order;
+    private EcsBitSet added;
+    private EcsBitSet changed;
+    private EcsBitSet removed;
+    private volatile int changeTick;
+    private final EcsFilterBuffer filterBuffer = new EcsFilterBuffer();
+    private final List<EcsComponentIndex<?>> indexes = new ArrayList<>();
 
     protected EcsSystem() {
     }
@@ -25,20 +42,185 @@ public abstract class EcsSystem {
         this.family = family;
     }
 
+    final void setAccess(final EcsBitSet reads, final EcsBitSet writes) {
+        this.reads = reads;
+        this.writes = writes;
+    }
+
+    final boolean conflictsWith(final EcsSystem other) {
+        if (reads == null || other.reads == null) {
+            return true;
+        }
+        return (writes != null && other.reads.intersects(writes))
+                || (other.writes != null && reads.intersects(other.writes));
+    }
+
+    final void setFilters(final EcsBitSet added, final EcsBitSet changed, final EcsBitSet removed) {
+        this.added = added;
+        this.changed = changed;
+        this.removed = removed;
+    }
+
+    final EcsFilterBuffer getFilterBuffer() {
+        return filterBuffer;
+    }
+
+    final EcsBitSet getAdded() {
+        return added;
+    }
+
+    final EcsBitSet getChanged() {
+        return changed;
+    }
+
+    final EcsBitSet getRemoved() {
+        return removed;
+    }
+
+    final boolean isFiltered() {
+        return added != null || changed != null || removed != null;
+    }
+
+    final int getChangeTick() {
+        return changeTick;
+    }
+
+    final void setChangeTick(final int changeTick) {
+        this.changeTick = changeTick;
+    }
+
+    final int getOrder() {
+        return order;
+    }
+
+    final void setOrder(final int order) {
+        this.order = order;
+    }
+
+    boolean isIdle() {
+        return false;
+    }
+
+    final EcsHistogram getHistogram() {
+        return histogram;
+    }
+
+    final long getLastUpdateNanos() {
+        return lastUpdateNanos;
+    }
+
+    final void recordUpdate(final long nanos) {
+        lastUpdateNanos = nanos;
+        histogram.record(nanos);
+    }
+
     protected final <T> EcsMapping<T> getMapping(final Class<T> type) {
         return getSetEngine().getMapping(type);
     }
 
+    protected final <E> EcsEventChannel<E> getEventChannel(final Class<E> type) {
+        return getSetEngine().getEventChannel(type);
+    }
+
+    protected final <T> EcsHashIndex<T> createHashIndex(final Class<T> type, final ToLongFunction<? super T> key) {
+        return addIndex(getSetEngine().createHashIndex(type, key));
+    }
+
+    protected final <T> EcsSortedIndex<T> createSortedIndex(final Class<T> type,
+                                                            final ToLongFunction<? super T> key) {
+        return addIndex(getSetEngine().createSortedIndex(type, key));
+    }
+
+    protected final <T> EcsSpatialIndex<T> createSpatialIndex(final Class<T> type, final ToDoubleFunction<? super T> x,
+                                                              final ToDoubleFunction<? super T> y,
+                                                              final float cellSize) {
+        return addIndex(getSetEngine().createSpatialIndex(type, x, y, cellSize));
+    }
+
+    protected final long getTime() {
+        return getSetEngine().getTime();
+    }
+
     protected final void createEntity(Consumer<EcsEntity> entityBuilder) {
         getSetEngine().createEntity(entityBuilder);
     }
 
+    protected final EcsCommandBuffer getCommandBuffer() {
+        if (commandBuffer == null) {
+            commandBuffer = getSetEngine().createCommandBuffer();
+        }
+        return commandBuffer;
+    }
+
+    final void releaseCommandBuffer() {
+        if (commandBuffer != null) {
+            getEngine().releaseCommandBuffer(commandBuffer);
+            commandBuffer = null;
+        }
+    }
+
+    final void closeIndexes() {
+        for (final EcsComponentIndex<?> index : indexes) {
+            index.close();
+        }
+        indexes.clear();
+    }
+
+    protected final int getLastChangeTick() {
+        return changeTick;
+    }
+
     protected void forEach(final Consumer<EcsEntity> action) {
         final EcsFamily family = getFamily();
         if (family == null) {
             throw new IllegalStateException("family not set");
         }
-        family.forEach(action);
+        if (isFiltered()) {
+            Objects.requireNonNull(action, "action");
+            final EcsFilterBuffer buffer = getSetEngine().getFilteredEntities(this);
+            final EcsEntity[] entities = buffer.getEntities();
+            for (int index = 0, count = buffer.getEntityCount(); index < count; index++) {
+                action.accept(entities[index]);
+            }
+        } else {
+            family.forEach(action);
+        }
+    }
+
+    protected void parallelForEach(final Consumer<EcsEntity> action) {
+        parallelForEach(getSetEngine().getBatchSize(), action);
+    }
+
+    protected void parallelForEach(final int batchSize, final Consumer<EcsEntity> action) {
+        final EcsFamily family = getFamily();
+        if (family == null) {
+            throw new IllegalStateException("family not set");
+        }
+        if (isFiltered()) {
+            final EcsFilterBuffer buffer = getSetEngine().getFilteredEntities(this);
+            getSetEngine().parallelForEach(new EcsSpliterator(new EcsEntity[][]{buffer.getEntities()},
+                    new int[]{0, buffer.getEntityCount()}, batchSize), action);
+        } else {
+            getSetEngine().parallelForEach(family, batchSize, action);
+        }
+    }
+
+    protected final <A, B> EcsView2<A, B> view(final EcsMapping<A> first, final EcsMapping<B> second) {
+        return new EcsView2<>(getSetFamily(), getViewId(first), getViewId(second));
+    }
+
+    protected final <A, B> EcsView2<A, B> view(final Class<A> first, final Class<B> second) {
+        return view(getMapping(first), getMapping(second));
+    }
+
+    protected final <A, B, C> EcsView3<A, B, C> view(final EcsMapping<A> first, final EcsMapping<B> second,
+                                                      final EcsMapping<C> third) {
+        return new EcsView3<>(getSetFamily(), getViewId(first), getViewId(second), getViewId(third));
+    }
+
+    protected final <A, B, C> EcsView3<A, B, C> view(final Class<A> first, final Class<B> second,
+                                                      final Class<C> third) {
+        return view(getMapping(first), getMapping(second), getMapping(third));
     }
 
     protected abstract void configure(EcsBuilder builder);
@@ -52,4 +234,32 @@ public abstract class EcsSystem {
         }
         return engine;
     }
+
+    private EcsFamily getSetFamily() {
+        final EcsFamily family = getFamily();
+        if (family == null) {
+            throw new IllegalStateException("family not set");
+        }
+        return family;
+    }
+
+    private int getViewId(final EcsMapping<?> mapping) {
+        Objects.requireNonNull(mapping, "mapping");
+        if (mapping.getEngine() != getSetEngine()) {
+            throw new IllegalArgumentException("engine mismatch");
+        }
+        if (mapping.getValueMapping() != null) {
+            throw new IllegalArgumentException("component is value mapped: " + mapping.getType().getName());
+        }
+        final EcsBitSet allOf = getSetFamily().getAspect().getAllOf();
+        if (allOf == null || !allOf.get(mapping.getId())) {
+            throw new IllegalArgumentException("component not required by family: " + mapping.getType().getName());
+        }
+        return mapping.getId();
+    }
+
+    private <I extends EcsComponentIndex<?>> I addIndex(final I index) {
+        indexes.add(index);
+        return index;
+    }
 }
@@ -0,0 +1,32 @@
+package org.dru.dusap.ecs;
+
+public final class EcsSystemTiming {
+    private final Class<? extends EcsSystem> systemClass;
+    private final EcsAspect aspect;
+    private final long lastNanos;
+    private final EcsHistogram histogram;
+
+    EcsSystemTiming(final Class<? extends EcsSystem> systemClass, final EcsAspect aspect, final long lastNanos,
+                    final EcsHistogram histogram) {
+        this.systemClass = systemClass;
+        this.aspect = aspect;
+        this.lastNanos = lastNanos;
+        this.histogram = histogram;
+    }
+
+    public Class<? extends EcsSystem> getSystemClass() {
+        return systemClass;
+    }
+
+    public EcsAspect getAspect() {
+        return aspect;
+    }
+
+    public long getLastNanos() {
+        return lastNanos;
+    }
+
+    public EcsHistogram getHistogram() {
+        return histogram;
+    }
+}
@@ -0,0 +1,159 @@
+package org.dru.dusap.ecs;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Objects;
+
+public abstract class EcsValueMapping {
+    static final int PAGE_SHIFT = EcsArchetype.CHUNK_SHIFT;
+    static final int PAGE_CAPACITY = 1 << PAGE_SHIFT;
+    static final int PAGE_MASK = PAGE_CAPACITY - 1;
+
+    private final EcsMapping<?> mapping;
+    private final EcsMemory memory;
+    private volatile Object[] pages;
+
+    EcsValueMapping(final EcsMapping<?> mapping, final EcsMemory memory) {
+        Objects.requireNonNull(mapping, "mapping");
+        Objects.requireNonNull(memory, "memory");
+        this.mapping = mapping;
+        this.memory = memory;
+        pages = new Object[0];
+    }
+
+    public final EcsEngine getEngine() {
+        return mapping.getEngine();
+    }
+
+    public final int getId() {
+        return mapping.getId();
+    }
+
+    public final Class<?> getType() {
+        return mapping.getType();
+    }
+
+    public final EcsMemory getMemory() {
+        return memory;
+    }
+
+    public final boolean has(final EcsEntity entity) {
+        return entity.hasComponent(mapping);
+    }
+
+    public final void remove(final EcsEntity entity) {
+        entity.clearComponent(mapping);
+    }
+
+    final EcsMapping<?> getMapping() {
+        return mapping;
+    }
+
+    final boolean defer(final EcsEntity entity, final long value) {
+        checkEntity(entity);
+        if (entity.hasComponent(getId()) || !entity.isDeferred()) {
+            return false;
+        }
+        getEngine().getCommandBuffer().setValue(entity.getHandle(), this, value);
+        return true;
+    }
+
+    final Object attach(final EcsEntity entity) {
+        checkEntity(entity);
+        if (!entity.hasComponent(getId())) {
+            if (entity.getChunk() == null) {
+                reset(getPage(entity.getId()), slot(entity));
+            }
+            entity.addComponent(getId(), null);
+        }
+        return getColumn(entity);
+    }
+
+    final void changed(final EcsEntity entity) {
+        getEngine().trackChanged(entity, getId());
+    }
+
+    final Object column(final EcsEntity entity) {
+        checkEntity(entity);
+        if (!entity.hasComponent(getId())) {
+            throw new IllegalArgumentException("component not set: " + getId());
+        }
+        return getColumn(entity);
+    }
+
+    final Object getColumn(final EcsEntity entity) {
+        final EcsChunk chunk = entity.getChunk();
+        return (chunk != null ? chunk.getValues(getId()) : getPage(entity.getId()));
+    }
+
+    final void reset(final EcsEntity entity) {
+        reset(getColumn(entity), slot(entity));
+    }
+
+    final void load(final EcsEntity entity, final long value) {
+        load(getColumn(entity), slot(entity), value);
+    }
+
+    final void encode(final EcsEntity entity, final ByteBuffer target) {
+        write(column(entity), slot(entity), target);
+    }
+
+    final void decode(final EcsEntity entity, final ByteBuffer source) {
+        checkEntity(entity);
+        entity.putComponent(getId(), null);
+        read(getColumn(entity), slot(entity), source);
+    }
+
+    final ByteBuffer allocate(final int capacityInBytes) {
+        final ByteBuffer buffer = (memory == EcsMemory.OFF_HEAP ? ByteBuffer.allocateDirect(capacityInBytes)
+                : ByteBuffer.allocate(capacityInBytes));
+        return buffer.order(ByteOrder.nativeOrder());
+    }
+
+    final Object getPage(final int entityId) {
+        final Object[] pages = this.pages;
+        final int index = entityId >> PAGE_SHIFT;
+        if (index < pages.length && pages[index] != null) {
+            return pages[index];
+        }
+        return allocatePage(index);
+    }
+
+    static int slot(final EcsEntity entity) {
+        return (entity.getChunk() != null ? entity.getRow() : entity.getId()) & PAGE_MASK;
+    }
+
+    abstract Object newColumn(int capacity);
+
+    abstract void reset(Object column, int index);
+
+    abstract void load(Object column, int index, long value);
+
+    abstract int getValueSize();
+
+    abstract void copy(Object source, int sourceIndex, Object target, int targetIndex);
+
+    abstract void write(Object column, int index, ByteBuffer target);
+
+    abstract void read(Object column, int index, ByteBuffer source);
+
+    private synchronized Object allocatePage(final int index) {
+        Object[] pages = this.pages;
+        if (index < pages.length && pages[index] != null) {
+            return pages[index];
+        }
+        pages = Arrays.copyOf(pages, Math.max(pages.length, (index + 1) * 3 / 2));
+        final Object result = newColumn(PAGE_CAPACITY);
+        pages[index] = result;
+        this.pages = pages;
+        return result;
+    }
+
+    private void checkEntity(final EcsEntity entity) {
+        Objects.requireNonNull(entity, "entity");
+        if (entity.getEngine() != getEngine()) {
+            throw new IllegalArgumentException("engine mismatch");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.dru.dusap.ecs;
+
+import java.util.List;
+import java.util.Objects;
+
+public final class EcsView2<A, B> {
+    private final EcsFamily family;
+    private final int firstId;
+    private final int secondId;
+
+    EcsView2(final EcsFamily family, final int firstId, final int secondId) {
+        this.family = family;
+        this.firstId = firstId;
+        this.secondId = secondId;
+    }
+
+    public int getEntityCount() {
+        return family.getEntityCount();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(final EcsConsumer2<? super A, ? super B> action) {
+        Objects.requireNonNull(action, "action");
+        final List<EcsArchetype> archetypes = family.getArchetypes();
+        if (archetypes == null) {
+            final EcsEntity[] entities = family.getEntities();
+            final int size = family.getEntityCount();
+            for (int index = 0; index < size; index++) {
+                final EcsEntity entity = entities[index];
+                action.accept(entity, (A) entity.getStoredComponent(firstId),
+                        (B) entity.getStoredComponent(secondId));
+            }
+            return;
+        }
+        for (int archetypeIndex = 0; archetypeIndex < archetypes.size(); archetypeIndex++) {
+            final EcsArchetype archetype = archetypes.get(archetypeIndex);
+            final int firstColumn = archetype.getColumn(firstId);
+            final int secondColumn = archetype.getColumn(secondId);
+            for (int chunkIndex = 0; chunkIndex < archetype.getChunkCount(); chunkIndex++) {
+                final EcsChunk chunk = archetype.getChunk(chunkIndex);
+                final EcsEntity[] entities = chunk.getEntities();
+                final Object[] first = chunk.getColumn(firstColumn);
+                final Object[] second = chunk.getColumn(secondColumn);
+                final int size = archetype.getChunkSize(chunkIndex);
+                for (int index = 0; index < size; index++) {
+                    action.accept(entities[index], (A) first[index], (B) second[index]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.dru.dusap.ecs;
+
+import java.util.List;
+import java.util.Objects;
+
+public final class EcsView3<A, B, C> {
+    private final EcsFamily family;
+    private final int firstId;
+    private final int secondId;
+    private final int thirdId;
+
+    EcsView3(final EcsFamily family, final int firstId, final int secondId, final int thirdId) {
+        this.family = family;
+        this.firstId = firstId;
+        this.secondId = secondId;
+        this.thirdId = thirdId;
+    }
+
+    public int getEntityCount() {
+        return family.getEntityCount();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(final EcsConsumer3<? super A, ? super B, ? super C> action) {
+        Objects.requireNonNull(action, "action");
+        final List<EcsArchetype> archetypes = family.getArchetypes();
+        if (archetypes == null) {
+            final EcsEntity[] entities = family.getEntities();
+            final int size = family.getEntityCount();
+            for (int index = 0; index < size; index++) {
+                final EcsEntity entity = entities[index];
+                action.accept(entity, (A) entity.getStoredComponent(firstId),
+                        (B) entity.getStoredComponent(secondId), (C) entity.getStoredComponent(thirdId));
+            }
+            return;
+        }
+        for (int archetypeIndex = 0; archetypeIndex < archetypes.size(); archetypeIndex++) {
+            final EcsArchetype archetype = archetypes.get(archetypeIndex);
+            final int firstColumn = archetype.getColumn(firstId);
+            final int secondColumn = archetype.getColumn(secondId);
+            final int thirdColumn = archetype.getColumn(thirdId);
+            for (int chunkIndex = 0; chunkIndex < archetype.getChunkCount(); chunkIndex++) {
+                final EcsChunk chunk = archetype.getChunk(chunkIndex);
+                final EcsEntity[] entities = chunk.getEntities();
+                final Object[] first = chunk.getColumn(firstColumn);
+                final Object[] second = chunk.getColumn(secondColumn);
+                final Object[] third = chunk.getColumn(thirdColumn);
+                final int size = archetype.getChunkSize(chunkIndex);
+                for (int index = 0; index < size; index++) {
+                    action.accept(entities[index], (A) first[index], (B) second[index], (C) third[index]);
+                }
+            }
+        }
+    }
+}
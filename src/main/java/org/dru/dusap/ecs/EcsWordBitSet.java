@@ -0,0 +1,57 @@
+package org.dru.dusap.ecs;
+
+final class EcsWordBitSet extends EcsBitSet {
+    private long word;
+
+    EcsWordBitSet() {
+        word = 0L;
+    }
+
+    @Override
+    public boolean get(final int pos) {
+        return index(pos) == 0 && (word & bitval(pos)) != 0L;
+    }
+
+    @Override
+    public void clear() {
+        word = 0L;
+    }
+
+    @Override
+    public boolean intersects(final EcsBitSet other) {
+        if (other instanceof EcsWordBitSet) {
+            return (word & ((EcsWordBitSet) other).word) != 0L;
+        }
+        return super.intersects(other);
+    }
+
+    @Override
+    public boolean containsAll(final EcsBitSet other) {
+        if (other instanceof EcsWordBitSet) {
+            final long value = ((EcsWordBitSet) other).word;
+            return (word & value) == value;
+        }
+        return super.containsAll(other);
+    }
+
+    @Override
+    int getWordCount() {
+        return 1;
+    }
+
+    @Override
+    long getWord(final int index) {
+        if (index != 0) {
+            throw new IndexOutOfBoundsException("word index out of range: " + index);
+        }
+        return word;
+    }
+
+    @Override
+    void setWord(final int index, final long value) {
+        if (index != 0) {
+            throw new IndexOutOfBoundsException("word index out of range: " + index);
+        }
+        word = value;
+    }
+}
@@ -0,0 +1,21 @@
+package org.dru.dusap.ecs;
+
+final class EcsWordMatcher extends EcsMatcher {
+    private final long allOf;
+    private final long anyOf;
+    private final long noneOf;
+
+    EcsWordMatcher(final long allOf, final long anyOf, final long noneOf) {
+        this.allOf = allOf;
+        this.anyOf = anyOf;
+        this.noneOf = noneOf;
+    }
+
+    @Override
+    boolean test(final EcsBitSet bitSet) {
+        final long word = bitSet.getWord(0);
+        return (word & allOf) == allOf
+                && (anyOf == 0L || (word & anyOf) != 0L)
+                && (word & noneOf) == 0L;
+    }
+}
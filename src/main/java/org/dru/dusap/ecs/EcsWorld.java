@@ -0,0 +1,215 @@
+package org.dru.dusap.ecs;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+public final class EcsWorld {
+    private final EcsEngine[] shards;
+    private final Executor executor;
+    private final List<Queue<EcsMigration>> departures;
+    private final List<Queue<EcsMigration>> arrivals;
+    private final List<List<EcsMigration>> batches;
+    private final List<Queue<Object>> messages;
+    private final ByteBuffer[] scratch;
+    private final AtomicBoolean updating;
+
+    public EcsWorld(final int shardCount, final IntFunction<EcsEngine> factory) {
+        this(shardCount, factory, ForkJoinPool.commonPool());
+    }
+
+    public EcsWorld(final int shardCount, final IntFunction<EcsEngine> factory, final Executor executor) {
+        Objects.requireNonNull(factory, "factory");
+        Objects.requireNonNull(executor, "executor");
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount has to be 1 or greater: " + shardCount);
+        }
+        shards = new EcsEngine[shardCount];
+        departures = new ArrayList<>(shardCount);
+        arrivals = new ArrayList<>(shardCount);
+        batches = new ArrayList<>(shardCount);
+        messages = new ArrayList<>(shardCount);
+        scratch = new ByteBuffer[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            final EcsEngine engine = factory.apply(shard);
+            Objects.requireNonNull(engine, "engine");
+            for (int index = 0; index < shard; index++) {
+                if (shards[index] == engine) {
+                    throw new IllegalArgumentException("engine used by several shards: " + shard);
+                }
+            }
+            shards[shard] = engine;
+            departures.add(new ConcurrentLinkedQueue<>());
+            arrivals.add(new ConcurrentLinkedQueue<>());
+            batches.add(new ArrayList<>());
+            messages.add(new ConcurrentLinkedQueue<>());
+            scratch[shard] = ByteBuffer.allocate(0);
+        }
+        this.executor = executor;
+        updating = new AtomicBoolean();
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public EcsEngine getShard(final int shard) {
+        checkShard(shard);
+        return shards[shard];
+    }
+
+    public int indexOf(final EcsEngine engine) {
+        Objects.requireNonNull(engine, "engine");
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (shards[shard] == engine) {
+                return shard;
+            }
+        }
+        return -1;
+    }
+
+    public int shardOf(final long key) {
+        final long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (((hash >>> 32) * shards.length) >>> 32);
+    }
+
+    public long createEntity(final long key, final Consumer<EcsEntity> builder) {
+        return shards[shardOf(key)].createEntity(builder);
+    }
+
+    public void migrate(final EcsEntity entity, final int target) {
+        migrate(entity, target, null);
+    }
+
+    /**
+     * Moves the entity to the target shard at the end of the next {@link #update()}. The entity is destroyed in its
+     * current shard and recreated in the target shard, so it arrives with a new handle and a new {@link EcsEntity};
+     * the old handle is dead afterwards and may be recycled. Use {@code onArrival} to learn the new entity, and do not
+     * keep handles of migrating entities across the update.
+     */
+    public void migrate(final EcsEntity entity, final int target, final Consumer<EcsEntity> onArrival) {
+        Objects.requireNonNull(entity, "entity");
+        checkShard(target);
+        final int source = indexOf(entity.getEngine());
+        if (source == -1) {
+            throw new IllegalArgumentException("entity not in world: " + EcsHandle.toString(entity.getHandle()));
+        }
+        if (source != target) {
+            departures.get(source).add(new EcsMigration(entity.getHandle(), target, onArrival));
+        }
+    }
+
+    public void send(final int target, final Object message) {
+        Objects.requireNonNull(message, "message");
+        checkShard(target);
+        messages.get(target).add(message);
+    }
+
+    public void update() {
+        if (!updating.compareAndSet(false, true)) {
+            throw new IllegalStateException("already updating");
+        }
+        try {
+            runShards(shard -> shards[shard].update());
+            runShards(this::depart);
+            runShards(this::arrive);
+        } finally {
+            updating.set(false);
+        }
+    }
+
+    private void depart(final int shard) {
+        final Queue<EcsMigration> queue = departures.get(shard);
+        if (queue.isEmpty()) {
+            return;
+        }
+        final EcsEngine engine = shards[shard];
+        final EcsMapping<?>[] mappings = engine.getMappings();
+        ByteBuffer buffer = scratch[shard];
+        buffer.clear();
+        EcsMigration migration;
+        while ((migration = queue.poll()) != null) {
+            if (!engine.isAlive(migration.getHandle())) {
+                continue;
+            }
+            final EcsEntity entity = engine.getEntity(migration.getHandle());
+            if (!engine.hasEntity(entity)) {
+                continue;
+            }
+            buffer = migration.capture(entity, mappings, buffer);
+            entity.destroyEntity();
+            arrivals.get(migration.getTarget()).add(migration);
+        }
+        scratch[shard] = buffer;
+    }
+
+    private void arrive(final int shard) {
+        final EcsEngine engine = shards[shard];
+        final Queue<EcsMigration> migrations = arrivals.get(shard);
+        final List<EcsMigration> batch = batches.get(shard);
+        EcsMigration migration;
+        while ((migration = migrations.poll()) != null) {
+            batch.add(migration);
+        }
+        if (!batch.isEmpty()) {
+            try {
+                final long[] handles = engine.createEntities(batch.size(),
+                        (entity, index) -> batch.get(index).restore(entity));
+                for (int index = 0; index < handles.length; index++) {
+                    final Consumer<EcsEntity> onArrival = batch.get(index).getOnArrival();
+                    if (onArrival != null) {
+                        onArrival.accept(engine.getEntity(handles[index]));
+                    }
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+        final Queue<Object> queue = messages.get(shard);
+        Object message;
+        while ((message = queue.poll()) != null) {
+            engine.publish(message);
+        }
+    }
+
+    private void runShards(final IntConsumer task) {
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[shards.length - 1];
+        for (int shard = 1; shard < shards.length; shard++) {
+            final int index = shard;
+            futures[shard - 1] = CompletableFuture.runAsync(() -> task.accept(index), executor);
+        }
+        try {
+            try {
+                task.accept(0);
+            } finally {
+                CompletableFuture.allOf(futures).join();
+            }
+        } catch (final CompletionException exc) {
+            final Throwable cause = exc.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw exc;
+        }
+    }
+
+    private void checkShard(final int shard) {
+        if (shard < 0 || shard >= shards.length) {
+            throw new IllegalArgumentException("shard out of range: " + shard);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.dru.dusap.ecs;
+
+final class EcsSoakComponents {
+    abstract static class Value {
+        long value;
+    }
+
+    static final class C0 extends Value {
+    }
+
+    static final class C1 extends Value {
+    }
+
+    static final class C2 extends Value {
+    }
+
+    static final class C3 extends Value {
+    }
+
+    static final class C4 extends Value {
+    }
+
+    static final class C5 extends Value {
+    }
+
+    static final class C6 extends Value {
+    }
+
+    static final class C7 extends Value {
+    }
+
+    static final class C8 extends Value {
+    }
+
+    static final class C9 extends Value {
+    }
+
+    static final class C10 extends Value {
+    }
+
+    static final class C11 extends Value {
+    }
+
+    static final class C12 extends Value {
+    }
+
+    static final class C13 extends Value {
+    }
+
+    static final class C14 extends Value {
+    }
+
+    static final class C15 extends Value {
+    }
+
+    static final Class<?>[] TYPES = {
+            C0.class, C1.class, C2.class, C3.class, C4.class, C5.class, C6.class, C7.class,
+            C8.class, C9.class, C10.class, C11.class, C12.class, C13.class, C14.class, C15.class
+    };
+
+    static Value newComponent(final int type) {
+        switch (type) {
+            case 0:
+                return new C0();
+            case 1:
+                return new C1();
+            case 2:
+                return new C2();
+            case 3:
+                return new C3();
+            case 4:
+                return new C4();
+            case 5:
+                return new C5();
+            case 6:
+                return new C6();
+            case 7:
+                return new C7();
+            case 8:
+                return new C8();
+            case 9:
+                return new C9();
+            case 10:
+                return new C10();
+            case 11:
+                return new C11();
+            case 12:
+                return new C12();
+            case 13:
+                return new C13();
+            case 14:
+                return new C14();
+            case 15:
+                return new C15();
+            default:
+                throw new IllegalArgumentException("unknown component type: " + type);
+        }
+    }
+
+    private EcsSoakComponents() {
+    }
+}
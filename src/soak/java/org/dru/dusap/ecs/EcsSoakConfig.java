@@ -0,0 +1,146 @@
+package org.dru.dusap.ecs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+final class EcsSoakConfig {
+    private final Map<String, String> values;
+
+    EcsSoakConfig() {
+        values = new LinkedHashMap<>();
+        values.put("storage", EcsStorage.SPARSE.name());
+        values.put("maxComponentCount", "64");
+        values.put("entities", "10000");
+        values.put("componentTypes", "8");
+        values.put("componentsPerEntity", "4");
+        values.put("spawnsPerTick", "100");
+        values.put("togglesPerTick", "100");
+        values.put("systems", "8");
+        values.put("families", "16");
+        values.put("warmupSeconds", "10");
+        values.put("durationSeconds", "60");
+        values.put("ticksPerSecond", "0");
+        values.put("seed", "1");
+        values.put("output", "build/reports/soak/soak.properties");
+    }
+
+    static EcsSoakConfig parse(final String[] args) {
+        final EcsSoakConfig config = new EcsSoakConfig();
+        for (final String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("expected key=value: " + arg);
+            }
+            final String key = arg.substring(0, separator);
+            if (!config.values.containsKey(key)) {
+                throw new IllegalArgumentException("unknown option: " + key);
+            }
+            config.values.put(key, arg.substring(separator + 1));
+        }
+        config.validate();
+        return config;
+    }
+
+    Map<String, String> getValues() {
+        return values;
+    }
+
+    EcsStorage getStorage() {
+        return EcsStorage.valueOf(values.get("storage"));
+    }
+
+    int getMaxComponentCount() {
+        return getInt("maxComponentCount");
+    }
+
+    int getEntities() {
+        return getInt("entities");
+    }
+
+    int getComponentTypes() {
+        return getInt("componentTypes");
+    }
+
+    int getComponentsPerEntity() {
+        return getInt("componentsPerEntity");
+    }
+
+    int getSpawnsPerTick() {
+        return getInt("spawnsPerTick");
+    }
+
+    int getTogglesPerTick() {
+        return getInt("togglesPerTick");
+    }
+
+    int getSystems() {
+        return getInt("systems");
+    }
+
+    int getFamilies() {
+        return getInt("families");
+    }
+
+    long getWarmupSeconds() {
+        return getLong("warmupSeconds");
+    }
+
+    long getDurationSeconds() {
+        return getLong("durationSeconds");
+    }
+
+    int getTicksPerSecond() {
+        return getInt("ticksPerSecond");
+    }
+
+    long getSeed() {
+        return getLong("seed");
+    }
+
+    String getOutput() {
+        return values.get("output");
+    }
+
+    private void validate() {
+        getStorage();
+        checkRange("componentTypes", 1, EcsSoakComponents.TYPES.length);
+        checkRange("maxComponentCount", getComponentTypes(), Integer.MAX_VALUE);
+        checkRange("componentsPerEntity", 1, getComponentTypes());
+        checkRange("entities", 0, Integer.MAX_VALUE);
+        checkRange("spawnsPerTick", 0, Integer.MAX_VALUE);
+        checkRange("togglesPerTick", 0, Integer.MAX_VALUE);
+        checkRange("systems", 0, EcsSoakSystems.COUNT);
+        checkRange("families", 0, Integer.MAX_VALUE);
+        checkRange("ticksPerSecond", 0, Integer.MAX_VALUE);
+        if (getWarmupSeconds() < 0L) {
+            throw new IllegalArgumentException("negative warmupSeconds: " + getWarmupSeconds());
+        }
+        if (getDurationSeconds() < 1L) {
+            throw new IllegalArgumentException("durationSeconds has to be 1 or greater: " + getDurationSeconds());
+        }
+        getSeed();
+    }
+
+    private void checkRange(final String key, final int min, final int max) {
+        final int value = getInt(key);
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(key + " out of range [" + min + ", " + max + "]: " + value);
+        }
+    }
+
+    private int getInt(final String key) {
+        try {
+            return Integer.parseInt(values.get(key));
+        } catch (final NumberFormatException exc) {
+            throw new IllegalArgumentException("invalid " + key + ": " + values.get(key), exc);
+        }
+    }
+
+    private long getLong(final String key) {
+        try {
+            return Long.parseLong(values.get(key));
+        } catch (final NumberFormatException exc) {
+            throw new IllegalArgumentException("invalid " + key + ": " + values.get(key), exc);
+        }
+    }
+}
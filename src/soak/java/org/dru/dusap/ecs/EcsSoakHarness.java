@@ -0,0 +1,291 @@
+package org.dru.dusap.ecs;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+public final class EcsSoakHarness {
+    private final EcsSoakConfig config;
+    private final Random random;
+    private final EcsEngine engine;
+    private final ChurnSystem churnSystem;
+    private final List<EcsQuery> queries;
+    private long[] tickNanos;
+    private int tickCount;
+
+    public EcsSoakHarness(final EcsSoakConfig config) {
+        this.config = config;
+        random = new Random(config.getSeed());
+        engine = new EcsEngine(config.getMaxComponentCount(), config.getStorage());
+        churnSystem = new ChurnSystem();
+        queries = new ArrayList<>();
+        tickNanos = new long[0];
+        tickCount = 0;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final EcsSoakConfig config = EcsSoakConfig.parse(args);
+        final EcsSoakHarness harness = new EcsSoakHarness(config);
+        harness.populate();
+        harness.run(config.getWarmupSeconds());
+        final Map<String, String> results = harness.measure(config.getDurationSeconds());
+        harness.close();
+        final Path output = Paths.get(config.getOutput());
+        write(output, config, results);
+        results.forEach((key, value) -> System.out.println(key + "=" + value));
+        System.out.println("results written to " + output.toAbsolutePath());
+    }
+
+    void populate() {
+        final int componentTypes = config.getComponentTypes();
+        for (int index = 0; index < config.getSystems(); index++) {
+            final int first = random.nextInt(componentTypes);
+            final int second = (first + 1 + random.nextInt(Math.max(1, componentTypes - 1))) % componentTypes;
+            engine.addSystem(EcsSoakSystems.newSystem(index, EcsSoakComponents.TYPES[first],
+                    EcsSoakComponents.TYPES[second]));
+        }
+        engine.addSystem(churnSystem);
+        for (int index = 0; index < config.getFamilies(); index++) {
+            final Class<?> allOf = EcsSoakComponents.TYPES[random.nextInt(componentTypes)];
+            final Class<?> noneOf = EcsSoakComponents.TYPES[random.nextInt(componentTypes)];
+            queries.add(engine.query(builder -> {
+                builder.allOf(allOf);
+                if (noneOf != allOf) {
+                    builder.noneOf(noneOf);
+                }
+            }));
+        }
+        for (int index = 0; index < config.getEntities(); index++) {
+            engine.createEntity(newEntity());
+        }
+        engine.flush();
+    }
+
+    void run(final long seconds) {
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final long period = (config.getTicksPerSecond() > 0 ? TimeUnit.SECONDS.toNanos(1L)
+                / config.getTicksPerSecond() : 0L);
+        long deadline = System.nanoTime();
+        while (System.nanoTime() < end) {
+            if (period > 0L) {
+                deadline += period;
+                final long delay = deadline - System.nanoTime();
+                if (delay > 0L) {
+                    LockSupport.parkNanos(delay);
+                }
+            }
+            final long start = System.nanoTime();
+            engine.update();
+            record(System.nanoTime() - start);
+        }
+    }
+
+    Map<String, String> measure(final long seconds) {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long gcCount = getGcCount();
+        final long gcMillis = getGcMillis();
+        final long allocated = getAllocatedBytes(threads, threadId);
+        churnSystem.reset();
+        tickNanos = new long[(int) Math.min(1 << 20, Math.max(16L, seconds * 1000L))];
+        tickCount = 0;
+        final long start = System.nanoTime();
+        run(seconds);
+        final double elapsed = (System.nanoTime() - start) / 1e9;
+        final long allocatedDelta = getAllocatedBytes(threads, threadId) - allocated;
+        final long[] sorted = Arrays.copyOf(tickNanos, tickCount);
+        Arrays.sort(sorted);
+        long total = 0L;
+        for (final long nanos : sorted) {
+            total += nanos;
+        }
+        final Map<String, String> results = new LinkedHashMap<>();
+        results.put("elapsedSeconds", format(elapsed));
+        results.put("ticks", Long.toString(tickCount));
+        results.put("ticksPerSecond", format(tickCount / elapsed));
+        results.put("tickMeanMicros", format(tickCount > 0 ? total / 1e3 / tickCount : 0.0));
+        results.put("tickP50Micros", format(percentile(sorted, 50.0) / 1e3));
+        results.put("tickP99Micros", format(percentile(sorted, 99.0) / 1e3));
+        results.put("tickP999Micros", format(percentile(sorted, 99.9) / 1e3));
+        results.put("tickMaxMicros", format(sorted.length > 0 ? sorted[sorted.length - 1] / 1e3 : 0.0));
+        results.put("allocatedBytes", (allocated >= 0L ? Long.toString(allocatedDelta) : "n/a"));
+        results.put("allocationMegabytesPerSecond", (allocated >= 0L ? format(allocatedDelta / 1e6 / elapsed)
+                : "n/a"));
+        results.put("gcCount", Long.toString(getGcCount() - gcCount));
+        results.put("gcMillis", Long.toString(getGcMillis() - gcMillis));
+        results.put("entitiesCreated", Long.toString(churnSystem.created));
+        results.put("entitiesDestroyed", Long.toString(churnSystem.destroyed));
+        results.put("componentsAdded", Long.toString(churnSystem.added));
+        results.put("componentsRemoved", Long.toString(churnSystem.removed));
+        results.put("structuralChangesPerSecond", format(churnSystem.getStructuralChanges() / elapsed));
+        results.put("finalEntityCount", Integer.toString(engine.getEntityCount()));
+        return results;
+    }
+
+    void close() {
+        for (final EcsQuery query : queries) {
+            query.close();
+        }
+        queries.clear();
+    }
+
+    private Consumer<EcsEntity> newEntity() {
+        final int componentTypes = config.getComponentTypes();
+        final int[] types = new int[componentTypes];
+        for (int type = 0; type < componentTypes; type++) {
+            types[type] = type;
+        }
+        final int count = config.getComponentsPerEntity();
+        for (int index = 0; index < count; index++) {
+            final int swap = index + random.nextInt(componentTypes - index);
+            final int type = types[swap];
+            types[swap] = types[index];
+            types[index] = type;
+        }
+        return entity -> {
+            for (int index = 0; index < count; index++) {
+                entity.setComponent(EcsSoakComponents.newComponent(types[index]));
+            }
+        };
+    }
+
+    private void record(final long nanos) {
+        if (tickCount >= tickNanos.length) {
+            tickNanos = Arrays.copyOf(tickNanos, (tickCount + 1) * 3 / 2);
+        }
+        tickNanos[tickCount++] = nanos;
+    }
+
+    private static long percentile(final long[] sorted, final double percentile) {
+        if (sorted.length == 0) {
+            return 0L;
+        }
+        final int rank = (int) Math.ceil(sorted.length * percentile / 100.0);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static long getAllocatedBytes(final ThreadMXBean threads, final long threadId) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean extended = (com.sun.management.ThreadMXBean) threads;
+            if (extended.isThreadAllocatedMemorySupported() && extended.isThreadAllocatedMemoryEnabled()) {
+                return extended.getThreadAllocatedBytes(threadId);
+            }
+        }
+        return -1L;
+    }
+
+    private static long getGcCount() {
+        long result = 0L;
+        for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0L, collector.getCollectionCount());
+        }
+        return result;
+    }
+
+    private static long getGcMillis() {
+        long result = 0L;
+        for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0L, collector.getCollectionTime());
+        }
+        return result;
+    }
+
+    private static String format(final double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static void write(final Path output, final EcsSoakConfig config, final Map<String, String> results)
+            throws IOException {
+        final List<String> lines = new ArrayList<>();
+        lines.add("# dusap-ecs soak run " + Instant.now());
+        lines.add("# java " + System.getProperty("java.version") + ", " + Runtime.getRuntime().availableProcessors()
+                + " cpus, max heap " + Runtime.getRuntime().maxMemory() / (1024 * 1024) + " MB");
+        config.getValues().forEach((key, value) -> lines.add("config." + key + "=" + value));
+        results.forEach((key, value) -> lines.add("result." + key + "=" + value));
+        final Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(output, lines, StandardCharsets.UTF_8);
+    }
+
+    private final class ChurnSystem extends EcsSystem {
+        private final List<EcsEntity> toggled;
+        private long created;
+        private long destroyed;
+        private long added;
+        private long removed;
+
+        private ChurnSystem() {
+            toggled = new ArrayList<>();
+        }
+
+        @Override
+        protected void configure(final EcsBuilder builder) {
+        }
+
+        @Override
+        protected void update() {
+            final int entityCount = Math.max(1, getFamily().getEntityCount());
+            final double destroyChance = (double) config.getSpawnsPerTick() / entityCount;
+            final double toggleChance = (double) config.getTogglesPerTick() / entityCount;
+            forEach(entity -> {
+                final double roll = random.nextDouble();
+                if (roll < destroyChance) {
+                    entity.destroyEntity();
+                    destroyed++;
+                } else if (roll < destroyChance + toggleChance) {
+                    toggled.add(entity);
+                }
+            });
+            for (final EcsEntity entity : toggled) {
+                final int type = random.nextInt(config.getComponentTypes());
+                final EcsMapping<?> mapping = getMapping(EcsSoakComponents.TYPES[type]);
+                if (!entity.hasComponent(mapping)) {
+                    entity.setComponent(EcsSoakComponents.newComponent(type));
+                    added++;
+                } else if (hasOtherComponent(entity, mapping.getId())) {
+                    entity.clearComponent(mapping);
+                    removed++;
+                }
+            }
+            toggled.clear();
+            for (int index = 0; index < config.getSpawnsPerTick(); index++) {
+                createEntity(newEntity());
+            }
+            created += config.getSpawnsPerTick();
+        }
+
+        private long getStructuralChanges() {
+            return created + destroyed + added + removed;
+        }
+
+        private void reset() {
+            created = 0L;
+            destroyed = 0L;
+            added = 0L;
+            removed = 0L;
+        }
+
+        private boolean hasOtherComponent(final EcsEntity entity, final int componentId) {
+            final EcsBitSet bitSet = entity.getBitSet();
+            return bitSet.nextSetBit(0) != componentId || bitSet.nextSetBit(componentId + 1) >= 0;
+        }
+    }
+}
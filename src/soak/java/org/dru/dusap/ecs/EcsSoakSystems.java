@@ -0,0 +1,174 @@
+package org.dru.dusap.ecs;
+
+final class EcsSoakSystems {
+    static final int COUNT = 16;
+
+    abstract static class WorkSystem extends EcsSystem {
+        private final Class<?> first;
+        private final Class<?> second;
+        private long checksum;
+
+        WorkSystem(final Class<?> first, final Class<?> second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        final long getChecksum() {
+            return checksum;
+        }
+
+        @Override
+        protected final void configure(final EcsBuilder builder) {
+            builder.allOf(first, second);
+        }
+
+        @Override
+        protected final void update() {
+            final EcsMapping<?> firstMapping = getMapping(first);
+            final EcsMapping<?> secondMapping = getMapping(second);
+            forEach(entity -> {
+                final EcsSoakComponents.Value value = (EcsSoakComponents.Value) entity.getComponent(firstMapping);
+                value.value += ((EcsSoakComponents.Value) entity.getComponent(secondMapping)).value + 1L;
+                checksum += value.value;
+            });
+        }
+    }
+
+    static final class W0 extends WorkSystem {
+        W0(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W1 extends WorkSystem {
+        W1(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W2 extends WorkSystem {
+        W2(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W3 extends WorkSystem {
+        W3(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W4 extends WorkSystem {
+        W4(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W5 extends WorkSystem {
+        W5(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W6 extends WorkSystem {
+        W6(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W7 extends WorkSystem {
+        W7(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W8 extends WorkSystem {
+        W8(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W9 extends WorkSystem {
+        W9(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W10 extends WorkSystem {
+        W10(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W11 extends WorkSystem {
+        W11(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W12 extends WorkSystem {
+        W12(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W13 extends WorkSystem {
+        W13(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W14 extends WorkSystem {
+        W14(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static final class W15 extends WorkSystem {
+        W15(final Class<?> first, final Class<?> second) {
+            super(first, second);
+        }
+    }
+
+    static WorkSystem newSystem(final int index, final Class<?> first, final Class<?> second) {
+        switch (index) {
+            case 0:
+                return new W0(first, second);
+            case 1:
+                return new W1(first, second);
+            case 2:
+                return new W2(first, second);
+            case 3:
+                return new W3(first, second);
+            case 4:
+                return new W4(first, second);
+            case 5:
+                return new W5(first, second);
+            case 6:
+                return new W6(first, second);
+            case 7:
+                return new W7(first, second);
+            case 8:
+                return new W8(first, second);
+            case 9:
+                return new W9(first, second);
+            case 10:
+                return new W10(first, second);
+            case 11:
+                return new W11(first, second);
+            case 12:
+                return new W12(first, second);
+            case 13:
+                return new W13(first, second);
+            case 14:
+                return new W14(first, second);
+            case 15:
+                return new W15(first, second);
+            default:
+                throw new IllegalArgumentException("unknown system: " + index);
+        }
+    }
+
+    private EcsSoakSystems() {
+    }
+}
@@ -0,0 +1,36 @@
+package org.dru.dusap.ecs;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class EcsComponentIndexTest {
+    @Test
+    public void slotReusedBeforeRefreshIsIndexed() {
+        for (final EcsStorage storage : EcsStorage.values()) {
+            for (final boolean pooling : new boolean[]{false, true}) {
+                final EcsEngine engine = new EcsEngine(8, storage);
+                engine.setEntityPooling(pooling);
+                final EcsSpatialIndex<Position> index = engine.createSpatialIndex(Position.class, p -> p.x, p -> p.y,
+                        10f);
+                final long first = engine.createEntity(entity -> entity.setComponent(new Position(1f, 1f)));
+                engine.destroyEntity(first);
+                final long second = engine.createEntity(entity -> entity.setComponent(new Position(2f, 2f)));
+                assertEquals(EcsHandle.index(first), EcsHandle.index(second));
+                assertEquals(1, index.size());
+                assertEquals(1, index.queryRadius(0f, 0f, 5f, entity -> {
+                }));
+            }
+        }
+    }
+
+    private static final class Position {
+        private final float x;
+        private final float y;
+
+        private Position(final float x, final float y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
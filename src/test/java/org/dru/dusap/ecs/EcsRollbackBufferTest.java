@@ -0,0 +1,45 @@
+package org.dru.dusap.ecs;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class EcsRollbackBufferTest {
+    @Test
+    public void restoreRevertsInPlaceMutation() {
+        for (final EcsStorage storage : EcsStorage.values()) {
+            final EcsEngine engine = new EcsEngine(8, storage);
+            engine.getMapping(Health.class).setCodec(new HealthCodec());
+            final EcsRollbackBuffer rollbackBuffer = new EcsRollbackBuffer(engine, 8);
+            final long handle = engine.createEntity(entity -> entity.setComponent(new Health(100)));
+            rollbackBuffer.capture(1);
+            engine.getEntity(handle).getComponent(Health.class).value = 50;
+            rollbackBuffer.capture(2);
+            engine.getEntity(handle).getComponent(Health.class).value = 10;
+            rollbackBuffer.restore(1);
+            assertEquals(100, engine.getEntity(handle).getComponent(Health.class).value);
+        }
+    }
+
+    private static final class Health {
+        private int value;
+
+        private Health(final int value) {
+            this.value = value;
+        }
+    }
+
+    private static final class HealthCodec implements EcsCodec<Health> {
+        @Override
+        public void encode(final Health component, final ByteBuffer target) {
+            target.putInt(component.value);
+        }
+
+        @Override
+        public Health decode(final ByteBuffer source) {
+            return new Health(source.getInt());
+        }
+    }
+}